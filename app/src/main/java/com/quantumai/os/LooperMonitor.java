@@ -0,0 +1,40 @@
+package com.quantumai.os;
+
+import android.os.Looper;
+import android.util.Printer;
+
+// Times every message a Looper dispatches, using the ">>>>> Dispatching" /
+// "<<<<< Finished" lines Looper prints around each one. The looper only builds
+// those strings while a printer is set, so this costs nothing when detached.
+public class LooperMonitor implements Printer {
+
+    private final Looper looper;
+    private final ThreadLoad load;
+
+    public LooperMonitor(Looper looper, ThreadLoad load) {
+        this.looper = looper;
+        this.load = load;
+    }
+
+    public ThreadLoad getLoad() {
+        return load;
+    }
+
+    public void attach() {
+        looper.setMessageLogging(this);
+    }
+
+    public void detach() {
+        looper.setMessageLogging(null);
+    }
+
+    @Override
+    public void println(String line) {
+        if (line.isEmpty()) return;
+        if (line.charAt(0) == '>') {
+            load.taskStarted();
+        } else if (line.charAt(0) == '<') {
+            load.taskFinished();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.quantumai.os;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.List;
+
+// Replays a Macro through the regular command dispatch. A step counts as settled
+// once its command has completed, the event that followed it in the recording has
+// been seen again, and the next step's target node is on screen. Only then does
+// the next step start, subject to a per-step timeout.
+public class MacroReplayer {
+
+    public static final long DEFAULT_STEP_TIMEOUT = 5000;
+
+    public interface CommandExecutor {
+        void execute(String action, String params, CommandResultSink sink);
+    }
+
+    private final List<Macro.Step> steps;
+    private final boolean faithful;
+    private final long stepTimeout;
+    private final Handler handler;
+    private final CommandExecutor executor;
+    private final UiNodeIndex index;
+    private final CommandResultSink resultSink;
+
+    private final long[] durations;
+    private final String[] outcomes;
+    private final Runnable timeoutRunnable = this::onTimeout;
+
+    private int current = -1;
+    private long stepStart;
+    private long replayStart;
+    private boolean actionDone;
+    private boolean awaitingEvent;
+    private boolean finished;
+
+    public MacroReplayer(Macro macro, boolean faithful, long stepTimeout, Handler handler,
+                         CommandExecutor executor, UiNodeIndex index, CommandResultSink resultSink) {
+        this.steps = macro.getSteps();
+        this.faithful = faithful;
+        this.stepTimeout = stepTimeout;
+        this.handler = handler;
+        this.executor = executor;
+        this.index = index;
+        this.resultSink = resultSink;
+        this.durations = new long[steps.size()];
+        this.outcomes = new String[steps.size()];
+        for (int i = 0; i < outcomes.length; i++) outcomes[i] = "skipped";
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void start() {
+        replayStart = SystemClock.uptimeMillis();
+        scheduleStep(0);
+    }
+
+    public void cancel() {
+        if (finished) return;
+        if (current >= 0 && current < steps.size()) outcomes[current] = "cancelled";
+        finish();
+    }
+
+    // Called for every accessibility event after the UI index has been updated
+    public void onEvent(int type, String packageName) {
+        if (finished || current < 0 || current >= steps.size()) return;
+        Macro.Step step = steps.get(current);
+        if (awaitingEvent && matches(step, type, packageName)) {
+            awaitingEvent = false;
+        }
+        checkSettled();
+    }
+
+    private void scheduleStep(int stepIndex) {
+        if (stepIndex >= steps.size()) {
+            finish();
+            return;
+        }
+        long delay = 0;
+        if (faithful && stepIndex > 0) {
+            long sinceLastStart = SystemClock.uptimeMillis() - stepStart;
+            delay = Math.max(0, steps.get(stepIndex).originalGap - sinceLastStart);
+        }
+        if (delay > 0) {
+            handler.postDelayed(() -> runStep(stepIndex), delay);
+        } else {
+            runStep(stepIndex);
+        }
+    }
+
+    private void runStep(int stepIndex) {
+        if (finished) return;
+        Macro.Step step = steps.get(stepIndex);
+        current = stepIndex;
+        stepStart = SystemClock.uptimeMillis();
+        actionDone = false;
+        // Listen from dispatch on: the UI may react before the command reports back
+        awaitingEvent = step.expectedType != 0;
+        handler.postDelayed(timeoutRunnable, stepTimeout);
+
+        executor.execute(step.action, step.params, (action, success, message) -> {
+            if (finished || current != stepIndex) return;
+            if (!success) {
+                outcomes[stepIndex] = "failed";
+                durations[stepIndex] = SystemClock.uptimeMillis() - stepStart;
+                finish();
+                return;
+            }
+            actionDone = true;
+            checkSettled();
+        });
+    }
+
+    private void checkSettled() {
+        if (finished || !actionDone || awaitingEvent) return;
+        int next = current + 1;
+        if (next < steps.size()) {
+            String target = steps.get(next).target;
+            if (target != null && NodeSelector.compile(target).findFirst(index) == null) return;
+        }
+        completeStep("ok");
+    }
+
+    private void onTimeout() {
+        if (finished || current < 0) return;
+        // Carry on: the next step's own command reports whether the UI really wasn't ready
+        completeStep(actionDone ? "timeout" : "no_result");
+    }
+
+    private void completeStep(String outcome) {
+        handler.removeCallbacks(timeoutRunnable);
+        outcomes[current] = outcome;
+        durations[current] = SystemClock.uptimeMillis() - stepStart;
+        scheduleStep(current + 1);
+    }
+
+    private static boolean matches(Macro.Step step, int type, String packageName) {
+        // A window transition always implies new content
+        boolean typeMatches = type == step.expectedType
+                || (step.expectedType == Macro.TYPE_WINDOW_CONTENT_CHANGED && type == Macro.TYPE_WINDOW_STATE_CHANGED);
+        return typeMatches && (step.expectedPackage == null || step.expectedPackage.equals(packageName));
+    }
+
+    private void finish() {
+        if (finished) return;
+        finished = true;
+        handler.removeCallbacks(timeoutRunnable);
+
+        int okCount = 0;
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < steps.size(); i++) {
+            if ("ok".equals(outcomes[i])) okCount++;
+            message.append(i == 0 ? "" : ",").append(steps.get(i).action)
+                    .append('=').append(outcomes[i]).append('@').append(durations[i]).append("ms");
+        }
+        message.insert(0, okCount + "/" + steps.size() + " steps ok in "
+                + (SystemClock.uptimeMillis() - replayStart) + "ms" + (faithful ? " (faithful)" : "") + ": ");
+        resultSink.onResult("replay", okCount == steps.size(), message.toString());
+    }
+}
@@ -6,10 +6,16 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.ViewGroup;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
-import android.webkit.WebViewClient;
+import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -19,22 +25,129 @@ import androidx.core.content.ContextCompat;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final String TAG = "QuantumMain";
+
     private static final int REQUEST_OVERLAY_PERMISSION = 1001;
     private static final int REQUEST_NOTIFICATION_PERMISSION = 1002;
+    private static final int REQUEST_AUDIO_PERMISSION = 1003;
+
+    private static final int PROBE_TRACE_COOKIE = 1;
+
+    // Voice capture is optional, so only ask once per launch
+    private boolean audioPermissionAsked = false;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private BackendProbe backendProbe;
+    private WebView webView;
+    private boolean backendReady = false;
+    private boolean pageCached = false;
+    private boolean pageLoading = false;
+    private boolean webUiShown = false;
 
+    // Startup runs as overlapping phases instead of one serial chain: a native
+    // placeholder is shown at once, the backend is probed off the main thread, and
+    // the WebView (Chromium init is the expensive part) is built when the main
+    // thread first goes idle. The page is loaded as soon as the WebView exists and
+    // either the start page is in the local bundle or the backend answers, and is
+    // swapped in for the placeholder when it finishes. See StartupTrace for the timings.
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.mark("activity_create");
         super.onCreate(savedInstanceState);
 
+        setContentView(createPlaceholder());
+        StartupTrace.mark("placeholder_shown");
+
+        startBackendProbe();
+
+        StartupTrace.begin("QuantumAI.permissions");
         checkPermissionsAndStart();
+        StartupTrace.end("permissions_checked");
+
+        // After the first frame is queued, so the placeholder isn't held up
+        Looper.myQueue().addIdleHandler(() -> {
+            prewarmWebView();
+            return false;
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (backendProbe != null) backendProbe.cancel();
+        if (webView != null) {
+            webView.destroy();
+            webView = null;
+        }
+        super.onDestroy();
+    }
+
+    private FrameLayout createPlaceholder() {
+        FrameLayout layout = new FrameLayout(this);
+        layout.setBackgroundColor(0xFF0A0A1A);
+        TextView label = new TextView(this);
+        label.setText("Starting QuantumAI\u2026");
+        label.setTextColor(0xFF8AB4FF);
+        label.setTextSize(18);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        params.gravity = Gravity.CENTER;
+        layout.addView(label, params);
+        return layout;
+    }
 
-        WebView webView = new WebView(this);
+    private void startBackendProbe() {
+        try {
+            StartupTrace.beginAsync("QuantumAI.backendProbe", PROBE_TRACE_COOKIE);
+            backendProbe = new BackendProbe(WebUiClient.ORIGIN + "/", mainHandler::post, (attempts, elapsedMs) -> {
+                StartupTrace.endAsync("QuantumAI.backendProbe", PROBE_TRACE_COOKIE);
+                StartupTrace.mark("backend_ready (" + attempts + " probes, " + elapsedMs + "ms)");
+                backendReady = true;
+                maybeLoadPage();
+            });
+            backendProbe.start();
+        } catch (Exception e) {
+            // Malformed URL can't happen with a constant origin; load without waiting
+            backendReady = true;
+        }
+    }
+
+    private void prewarmWebView() {
+        if (isDestroyed() || webView != null) return;
+        StartupTrace.begin("QuantumAI.webViewInit");
+        webView = new WebView(this);
         WebSettings settings = webView.getSettings();
         settings.setJavaScriptEnabled(true);
         settings.setDomStorageEnabled(true);
-        webView.setWebViewClient(new WebViewClient());
-        webView.loadUrl("http://127.0.0.1:5000");
+        // Static files come from the local bundle; only API calls reach the backend
+        WebUiClient client = new WebUiClient(this);
+        client.setOnPageFinished(this::onPageReady);
+        webView.setWebViewClient(client);
+        client.checkLocalPage(() -> mainHandler.post(() -> {
+            StartupTrace.mark("page_cached");
+            pageCached = true;
+            maybeLoadPage();
+        }));
+        // Batched native commands for the WebUI, for its origin only; see NativeBridge
+        if (!NativeBridge.install(webView)) {
+            Log.w(TAG, "WebView too old for origin-restricted messaging; native bridge disabled");
+        }
+        StartupTrace.end("webview_ready");
+        maybeLoadPage();
+    }
+
+    private void maybeLoadPage() {
+        if (webView == null || !(backendReady || pageCached) || pageLoading) return;
+        pageLoading = true;
+        StartupTrace.begin("QuantumAI.loadUrl");
+        webView.loadUrl(WebUiClient.ORIGIN);
+        StartupTrace.end("page_load_started");
+    }
+
+    private void onPageReady() {
+        if (webView == null || webUiShown) return;
+        webUiShown = true;
         setContentView(webView);
+        StartupTrace.reportInteractive();
     }
 
     private void checkPermissionsAndStart() {
@@ -49,7 +162,17 @@ public class MainActivity extends AppCompatActivity {
             }
         }
 
-        // 2. Check Overlay Permission
+        // 2. Check Microphone Permission (voice activity detection in the orb service)
+        if (!audioPermissionAsked && ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
+                != PackageManager.PERMISSION_GRANTED) {
+            audioPermissionAsked = true;
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.RECORD_AUDIO},
+                    REQUEST_AUDIO_PERMISSION);
+            return;
+        }
+
+        // 3. Check Overlay Permission
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             if (!Settings.canDrawOverlays(this)) {
                 Toast.makeText(this, "Please grant overlay permission", Toast.LENGTH_LONG).show();
@@ -80,8 +203,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-        if (requestCode == REQUEST_NOTIFICATION_PERMISSION) {
-            checkPermissionsAndStart(); // Re-check overlay after notification permission
+        if (requestCode == REQUEST_NOTIFICATION_PERMISSION || requestCode == REQUEST_AUDIO_PERMISSION) {
+            checkPermissionsAndStart(); // Re-check the remaining permissions
         }
     }
 
@@ -0,0 +1,158 @@
+package com.quantumai.os;
+
+import android.net.Uri;
+import android.util.Base64;
+import android.view.Choreographer;
+import android.webkit.WebView;
+
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+// Native access for the WebUI, exposed to the page as window.QuantumNative.
+//
+//   QuantumNative.postMessage(JSON.stringify([
+//       {id: 1, action: "tap", params: "540,1200"},
+//       {id: 2, action: "orb_state", params: "thinking"}]))
+//
+// Actions starting with "orb_" go to OrbOverlayService, everything else to
+// QuantumAccessibilityService; both are called in-process, with no broadcasts.
+// Results are collected and handed back at most once per frame, as one array:
+//
+//   QuantumNative.onmessage = e => handle(JSON.parse(e.data))
+//   // [{id, action, success, message, payload?}, ...]
+//
+// payload carries binary results (e.g. "snapshot") as base64.
+//
+// The object is a web message listener, not a JavascriptInterface, so the
+// WebView only injects it into frames whose origin is exactly WebUiClient.ORIGIN
+// and results only go back to the frame that sent the commands. Where the
+// WebView is too old for listeners the bridge is not installed at all.
+public class NativeBridge implements Choreographer.FrameCallback, WebViewCompat.WebMessageListener {
+
+    public static final String JS_NAME = "QuantumNative";
+
+    // Obtained on the main thread; posting to it from other threads is safe
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Object lock = new Object();
+    private StringBuilder pending = new StringBuilder();
+    private StringBuilder spare = new StringBuilder();
+    private boolean framePosted;
+    // Main thread only: where results go, the frame that last posted commands
+    private JavaScriptReplyProxy replyProxy;
+
+    // Returns false if this WebView can't restrict the bridge to the WebUI origin
+    public static boolean install(WebView webView) {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)) return false;
+        WebViewCompat.addWebMessageListener(webView, JS_NAME,
+                Collections.singleton(WebUiClient.ORIGIN), new NativeBridge());
+        return true;
+    }
+
+    // Main thread, only for messages from WebUiClient.ORIGIN
+    @Override
+    public void onPostMessage(WebView view, WebMessageCompat message, Uri sourceOrigin,
+                              boolean isMainFrame, JavaScriptReplyProxy replyProxy) {
+        this.replyProxy = replyProxy;
+        String batch = message.getData();
+        if (batch != null) submit(batch);
+    }
+
+    // Returns how many commands were accepted. Commands that can't be dispatched
+    // still get an error result.
+    private int submit(String batch) {
+        JSONArray commands;
+        try {
+            commands = new JSONArray(batch);
+        } catch (Exception e) {
+            addResult(null, "batch", false, "Error: " + e.getMessage(), null);
+            return 0;
+        }
+
+        int accepted = 0;
+        for (int i = 0; i < commands.length(); i++) {
+            JSONObject command = commands.optJSONObject(i);
+            if (command == null) continue;
+            Object id = command.opt("id");
+            String action = command.optString("action", null);
+            String params = command.optString("params", null);
+            if (action == null) {
+                addResult(id, "", false, "Error: missing action", null);
+                continue;
+            }
+
+            CommandResultSink sink = resultSink(id);
+            boolean dispatched = action.startsWith("orb_")
+                    ? OrbOverlayService.submit(action, params, sink)
+                    : QuantumAccessibilityService.submit(action, params, sink);
+            if (dispatched) {
+                accepted++;
+            } else {
+                sink.onResult(action, false, action.startsWith("orb_")
+                        ? "Orb service not running" : "Accessibility service not enabled");
+            }
+        }
+        return accepted;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        StringBuilder batch;
+        synchronized (lock) {
+            framePosted = false;
+            if (pending.length() == 0) return;
+            batch = pending;
+            pending = spare;
+            spare = batch;
+        }
+        String results = "[" + batch + "]";
+        batch.setLength(0);
+        if (replyProxy != null) replyProxy.postMessage(results);
+    }
+
+    private CommandResultSink resultSink(Object id) {
+        return new CommandResultSink() {
+            @Override
+            public void onResult(String action, boolean success, String message) {
+                addResult(id, action, success, message, null);
+            }
+
+            @Override
+            public void onPayload(String action, ByteBuffer payload, String message) {
+                byte[] bytes = new byte[payload.remaining()];
+                payload.duplicate().get(bytes);
+                addResult(id, action, true, message, Base64.encodeToString(bytes, Base64.NO_WRAP));
+            }
+        };
+    }
+
+    private void addResult(Object id, String action, boolean success, String message, String payload) {
+        String json;
+        try {
+            JSONObject result = new JSONObject();
+            result.put("id", id != null ? id : JSONObject.NULL);
+            result.put("action", action);
+            result.put("success", success);
+            result.put("message", message);
+            if (payload != null) result.put("payload", payload);
+            json = result.toString();
+        } catch (Exception e) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (pending.length() > 0) pending.append(',');
+            pending.append(json);
+            if (framePosted) return;
+            framePosted = true;
+        }
+        choreographer.postFrameCallback(this);
+    }
+}
@@ -0,0 +1,235 @@
+package com.quantumai.os;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.WindowManager;
+
+// Drags the orb's overlay window with the finger, applying at most one layout
+// update per vsync however fast touch events arrive. On release the orb keeps its
+// fling velocity and springs to the nearest horizontal screen edge. Every frame of
+// a drag and its settle animation is fed to FrameStats, logged when the orb comes
+// to rest.
+//
+// The window uses Gravity.TOP | Gravity.END, so params.x is the distance from the
+// right edge and grows to the left.
+public class OrbDragController implements Choreographer.FrameCallback {
+
+    private static final String TAG = "QuantumOrb";
+
+    private static final float SPRING_STIFFNESS = 400f;
+    private static final float SPRING_DAMPING_RATIO = 0.8f;
+    // Fraction of fling velocity kept per second is exp(-FLING_FRICTION)
+    private static final float FLING_FRICTION = 4f;
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 30f;
+    // Integration step in seconds; long frames are split so the spring stays stable
+    private static final float MAX_STEP = 1f / 120;
+
+    private final WindowManager windowManager;
+    private final View view;
+    private final WindowManager.LayoutParams params;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final FrameStats frameStats;
+    private final int touchSlop;
+    private final int maxFlingVelocity;
+    private final int edgeMargin;
+
+    private VelocityTracker velocityTracker;
+    private boolean touching;
+    private boolean dragging;
+    private boolean animating;
+    private boolean framePosted;
+    private long lastFrameNanos;
+
+    private int startX, startY;
+    private float downRawX, downRawY;
+    // Latest finger position, applied on the next frame
+    private int dragX, dragY;
+
+    private float posX, posY, velX, velY;
+    private float snapX, minY, maxY;
+
+    public OrbDragController(Context context, WindowManager windowManager, View view,
+                             WindowManager.LayoutParams params, int edgeMargin) {
+        this.windowManager = windowManager;
+        this.view = view;
+        this.params = params;
+        this.edgeMargin = edgeMargin;
+        ViewConfiguration config = ViewConfiguration.get(context);
+        touchSlop = config.getScaledTouchSlop();
+        maxFlingVelocity = config.getScaledMaximumFlingVelocity();
+        frameStats = new FrameStats(windowManager.getDefaultDisplay().getRefreshRate());
+    }
+
+    public boolean onTouch(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                stop();
+                touching = true;
+                dragging = false;
+                startX = params.x;
+                startY = params.y;
+                downRawX = event.getRawX();
+                downRawY = event.getRawY();
+                if (velocityTracker == null) velocityTracker = VelocityTracker.obtain();
+                velocityTracker.clear();
+                track(event);
+                return true;
+
+            case MotionEvent.ACTION_MOVE: {
+                if (!touching) return false;
+                track(event);
+                float dx = downRawX - event.getRawX();
+                float dy = event.getRawY() - downRawY;
+                if (!dragging && dx * dx + dy * dy > touchSlop * touchSlop) {
+                    dragging = true;
+                    postFrame();
+                }
+                if (dragging) {
+                    // Only record the position; doFrame pushes it to the window
+                    dragX = startX + (int) dx;
+                    dragY = startY + (int) dy;
+                }
+                return true;
+            }
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL: {
+                if (!touching) return false;
+                touching = false;
+                boolean wasDragging = dragging;
+                if (dragging) {
+                    track(event);
+                    velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+                    settle(-velocityTracker.getXVelocity(), velocityTracker.getYVelocity());
+                }
+                dragging = false;
+                return wasDragging;
+            }
+        }
+        return false;
+    }
+
+    // Drops any drag or animation in progress, leaving the orb where it is
+    public void stop() {
+        if (framePosted) {
+            choreographer.removeFrameCallback(this);
+            framePosted = false;
+        }
+        if (animating || dragging) finishMotion();
+        animating = false;
+        dragging = false;
+        touching = false;
+    }
+
+    public void release() {
+        stop();
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        frameStats.onFrame(frameTimeNanos);
+        float dt = lastFrameNanos != 0 ? (frameTimeNanos - lastFrameNanos) / 1e9f : 1f / 60;
+        lastFrameNanos = frameTimeNanos;
+
+        if (dragging) {
+            moveTo(dragX, dragY);
+            postFrame();
+        } else if (animating) {
+            step(Math.min(dt, 0.1f));
+            if (Math.abs(posX - snapX) < REST_DISTANCE && Math.abs(velX) < REST_VELOCITY
+                    && Math.abs(velY) < REST_VELOCITY) {
+                moveTo(Math.round(snapX), Math.round(posY));
+                animating = false;
+                finishMotion();
+            } else {
+                moveTo(Math.round(posX), Math.round(posY));
+                postFrame();
+            }
+        } else {
+            finishMotion();
+        }
+    }
+
+    private void settle(float velocityX, float velocityY) {
+        DisplayMetrics metrics = view.getResources().getDisplayMetrics();
+        float maxX = metrics.widthPixels - view.getWidth();
+        minY = 0;
+        maxY = Math.max(0, metrics.heightPixels - view.getHeight());
+
+        posX = params.x;
+        posY = params.y;
+        velX = velocityX;
+        velY = velocityY;
+        // Pick the edge the fling would coast towards, not just the nearer one
+        float projectedX = posX + velocityX / FLING_FRICTION;
+        snapX = projectedX < maxX / 2 ? edgeMargin : maxX - edgeMargin;
+        animating = true;
+        postFrame();
+    }
+
+    private void step(float dt) {
+        float damping = 2 * SPRING_DAMPING_RATIO * (float) Math.sqrt(SPRING_STIFFNESS);
+        while (dt > 0) {
+            float h = Math.min(dt, MAX_STEP);
+            dt -= h;
+            velX += (-SPRING_STIFFNESS * (posX - snapX) - damping * velX) * h;
+            posX += velX * h;
+            velY *= (float) Math.exp(-FLING_FRICTION * h);
+            posY += velY * h;
+            if (posY < minY || posY > maxY) {
+                posY = Math.max(minY, Math.min(maxY, posY));
+                velY = 0;
+            }
+        }
+    }
+
+    private void moveTo(int x, int y) {
+        if (params.x == x && params.y == y) return;
+        params.x = x;
+        params.y = y;
+        try {
+            windowManager.updateViewLayout(view, params);
+        } catch (Exception e) {
+            // Window already removed
+        }
+    }
+
+    private void postFrame() {
+        if (framePosted) return;
+        framePosted = true;
+        choreographer.postFrameCallback(this);
+    }
+
+    private void finishMotion() {
+        lastFrameNanos = 0;
+        frameStats.pause();
+        if (frameStats.getFrames() > 0) {
+            Log.d(TAG, "Orb drag: " + frameStats);
+            frameStats.reset();
+        }
+    }
+
+    // The window moves under the finger, so velocity is tracked in screen coordinates
+    private void track(MotionEvent event) {
+        MotionEvent screen = MotionEvent.obtain(event);
+        screen.offsetLocation(event.getRawX() - event.getX(), event.getRawY() - event.getY());
+        velocityTracker.addMovement(screen);
+        screen.recycle();
+    }
+}
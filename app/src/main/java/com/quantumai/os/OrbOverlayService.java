@@ -1,5 +1,6 @@
 package com.quantumai.os;
 
+import android.Manifest;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -9,13 +10,17 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageManager;
 import android.content.pm.ServiceInfo;
 import android.graphics.Color;
 import android.graphics.PixelFormat;
-import android.graphics.drawable.GradientDrawable;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
 import android.provider.Settings;
+import android.util.Log;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -27,17 +32,36 @@ import androidx.core.app.NotificationCompat;
 
 public class OrbOverlayService extends Service {
 
+    private static final String TAG = "QuantumOrb";
     private static final String CHANNEL_ID = "QuantumAI_Orb";
     private static final int NOTIFICATION_ID = 1001;
     private static final String ACTION_SHOW_ORB = "com.quantumai.ACTION_SHOW_ORB";
+    private static final int ORB_EDGE_MARGIN = 20;
+
+    // Set while running, for in-process callers such as the WebView bridge
+    private static volatile OrbOverlayService instance;
 
     private WindowManager windowManager;
     private FrameLayout orbView;
-    private View orbCircle;
+    private OrbView orbCircle;
     private WindowManager.LayoutParams orbLayoutParams;
+    private OrbDragController dragController;
+    private AmplitudeFeed amplitudeFeed;
+    private VoiceCapture voiceCapture;
+    private SpeechUploader speechUploader;
+    private BackendEventStream backendEvents;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Logs the orb's frame rate once a window, including windows where it drew nothing
+    private final Runnable frameRateReport = new Runnable() {
+        @Override
+        public void run() {
+            if (orbCircle != null) orbCircle.reportFrameRate("periodic");
+            mainHandler.postDelayed(this, OrbView.RATE_WINDOW_MS);
+        }
+    };
 
-    private String currentState = "idle";
-    private boolean isPulsing = false;
+    // Null until the first state is applied, so the initial "idle" takes effect
+    private String currentState;
     private boolean isOrbVisible = true;
 
     // Color scheme - 50% transparency
@@ -53,6 +77,10 @@ public class OrbOverlayService extends Service {
             String action = intent.getAction();
             if (ACTION_SHOW_ORB.equals(action)) {
                 showOrb();
+            } else if (Intent.ACTION_SCREEN_OFF.equals(action) || Intent.ACTION_SCREEN_ON.equals(action)) {
+                if (orbCircle != null) orbCircle.setScreenOn(Intent.ACTION_SCREEN_ON.equals(action));
+            } else if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(action)) {
+                updatePowerSave();
             } else {
                 String state = intent.getStringExtra("state");
                 if (state != null) {
@@ -62,14 +90,58 @@ public class OrbOverlayService extends Service {
         }
     };
 
+    // In-process commands: orb_state (params = state name), orb_show, orb_hide, orb_stats.
+    // Returns false if the service isn't running.
+    public static boolean submit(String action, String params, CommandResultSink sink) {
+        OrbOverlayService service = instance;
+        if (service == null) return false;
+        service.mainHandler.post(() -> service.executeCommand(action, params, sink));
+        return true;
+    }
+
+    private void executeCommand(String action, String params, CommandResultSink sink) {
+        switch (action) {
+            case "orb_state":
+                if (params == null || params.isEmpty()) {
+                    sink.onResult(action, false, "Error: expected a state");
+                    return;
+                }
+                updateOrbState(params.trim());
+                sink.onResult(action, true, "State " + currentState);
+                break;
+            case "orb_show":
+                showOrb();
+                sink.onResult(action, true, "Orb shown");
+                break;
+            case "orb_hide":
+                hideOrb();
+                sink.onResult(action, true, "Orb hidden");
+                break;
+            case "orb_stats":
+                if (orbCircle == null) {
+                    sink.onResult(action, false, "Orb not created");
+                    return;
+                }
+                sink.onResult(action, true, "state=" + currentState + " visible=" + isOrbVisible
+                        + " " + orbCircle.stats());
+                break;
+            default:
+                sink.onResult(action, false, "Unknown action");
+        }
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
+        instance = this;
         createNotificationChannel();
 
         IntentFilter filter = new IntentFilter();
         filter.addAction("com.quantumai.ORB_STATE");
         filter.addAction(ACTION_SHOW_ORB);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
         
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             registerReceiver(stateReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
@@ -81,35 +153,117 @@ public class OrbOverlayService extends Service {
             createOrbOverlay();
         }
 
-        startForegroundServiceCompat();
+        // No microphone type here: after a sticky restart onCreate runs in the
+        // background, where API 34+ refuses it. Capture starts from onStartCommand.
+        startForegroundServiceCompat(false);
+        startBackendEvents();
+    }
+
+    // Lets the backend push orb states and commands directly, independent of the WebView
+    private void startBackendEvents() {
+        try {
+            backendEvents = new BackendEventStream(BackendEventStream.DEFAULT_URL, mainHandler::post,
+                    new BackendEventStream.Listener() {
+                        @Override
+                        public void onState(String state) {
+                            updateOrbState(state);
+                        }
+
+                        @Override
+                        public void onCommand(String name, String args) {
+                            switch (name) {
+                                case "show":
+                                    showOrb();
+                                    break;
+                                case "hide":
+                                    hideOrb();
+                                    break;
+                            }
+                        }
+
+                        @Override
+                        public void onConnectionChanged(boolean connected) {
+                            // States keep arriving by broadcast while disconnected
+                        }
+                    });
+            backendEvents.start();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
-    private void startForegroundServiceCompat() {
+    // Returns false if the system refused the microphone type, which it does on
+    // API 34+ unless the app is in the foreground
+    private boolean startForegroundServiceCompat(boolean microphone) {
         Notification notification = createNotification();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+            int type = ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE;
+            if (microphone) {
+                try {
+                    startForeground(NOTIFICATION_ID, notification, type | ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE);
+                    return true;
+                } catch (SecurityException e) {
+                    Log.w(TAG, "Microphone service type refused; running without voice capture", e);
+                }
+            }
+            startForeground(NOTIFICATION_ID, notification, type);
+            return !microphone;
         } else {
             startForeground(NOTIFICATION_ID, notification);
+            return true;
+        }
+    }
+
+    private boolean hasAudioPermission() {
+        return checkSelfPermission(Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    // Only from a foreground entry point (an explicit start by the app). Safe to
+    // call again, e.g. once the permission has been granted after start.
+    private void startVoiceCapture() {
+        if (voiceCapture != null || !hasAudioPermission()) return;
+        // Re-promote so the microphone service type is included
+        if (!startForegroundServiceCompat(true)) return;
+        try {
+            speechUploader = new SpeechUploader(SpeechUploader.DEFAULT_URL, (success, message) -> {
+                if (!success) mainHandler.post(() -> updateOrbState("error"));
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
         }
+        voiceCapture = new VoiceCapture(speechUploader, new VoiceCapture.Listener() {
+            @Override
+            public void onSpeechStart() {
+                mainHandler.post(() -> updateOrbState("listening"));
+            }
+
+            @Override
+            public void onSpeechEnd() {
+                // The segment is on its way; the backend moves the orb on from here
+                mainHandler.post(() -> updateOrbState("thinking"));
+            }
+
+            @Override
+            public void onLevel(float level, boolean speaking) {
+                if (speaking && amplitudeFeed != null) amplitudeFeed.offer(level);
+            }
+        });
+        voiceCapture.start();
     }
 
     private void createOrbOverlay() {
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
         orbView = new FrameLayout(this);
-        orbCircle = new View(this);
-        
+
         int orbSize = (int) (30 * getResources().getDisplayMetrics().density); 
-        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(orbSize, orbSize);
+        orbCircle = new OrbView(this, orbSize);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.WRAP_CONTENT);
         params.gravity = Gravity.CENTER;
         orbCircle.setLayoutParams(params);
-
-        GradientDrawable background = new GradientDrawable();
-        background.setShape(GradientDrawable.OVAL);
-        background.setColor(COLOR_IDLE);
-        orbCircle.setBackground(background);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            orbCircle.setElevation(8);
-        }
+        updatePowerSave();
+        startAmplitudeFeed();
 
         orbView.addView(orbCircle);
 
@@ -124,7 +278,7 @@ public class OrbOverlayService extends Service {
         );
 
         orbLayoutParams.gravity = Gravity.TOP | Gravity.END;
-        orbLayoutParams.x = 20;
+        orbLayoutParams.x = ORB_EDGE_MARGIN;
         orbLayoutParams.y = 200;
 
         setupGestureDetection(orbView);
@@ -137,9 +291,23 @@ public class OrbOverlayService extends Service {
         }
 
         updateOrbState("idle");
+        mainHandler.postDelayed(frameRateReport, OrbView.RATE_WINDOW_MS);
+    }
+
+    private void startAmplitudeFeed() {
+        amplitudeFeed = new AmplitudeFeed(AmplitudeFeed.DEFAULT_PORT, orbCircle);
+        try {
+            amplitudeFeed.start();
+            orbCircle.setAmplitudeFeed(amplitudeFeed);
+        } catch (Exception e) {
+            // Orb still works on plain state pulses
+            e.printStackTrace();
+            amplitudeFeed = null;
+        }
     }
 
     private void setupGestureDetection(View view) {
+        dragController = new OrbDragController(this, windowManager, orbView, orbLayoutParams, ORB_EDGE_MARGIN);
         GestureDetector gestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
             @Override
             public boolean onDoubleTap(MotionEvent e) {
@@ -155,38 +323,20 @@ public class OrbOverlayService extends Service {
         });
 
         view.setOnTouchListener(new View.OnTouchListener() {
-            private int initialX, initialY;
-            private float initialTouchX, initialTouchY;
-
             @Override
             public boolean onTouch(View v, MotionEvent event) {
                 if (gestureDetector.onTouchEvent(event)) {
                     return true;
                 }
-
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        initialX = orbLayoutParams.x;
-                        initialY = orbLayoutParams.y;
-                        initialTouchX = event.getRawX();
-                        initialTouchY = event.getRawY();
-                        return true;
-
-                    case MotionEvent.ACTION_MOVE:
-                        orbLayoutParams.x = initialX + (int) (initialTouchX - event.getRawX());
-                        orbLayoutParams.y = initialY + (int) (event.getRawY() - initialTouchY);
-                        try {
-                            windowManager.updateViewLayout(orbView, orbLayoutParams);
-                        } catch (Exception ex) {}
-                        return true;
-                }
-                return false;
+                // Window moves are coalesced to one per frame by the controller
+                return dragController.onTouch(event);
             }
         });
     }
 
     private void hideOrb() {
         if (isOrbVisible && orbView != null) {
+            if (dragController != null) dragController.stop();
             orbView.setVisibility(View.GONE);
             isOrbVisible = false;
             // Update notification to show "Tap to restore"
@@ -211,65 +361,36 @@ public class OrbOverlayService extends Service {
     }
 
     private void updateOrbState(String state) {
-        if (state.equals(currentState)) return;
+        if (orbCircle == null || state.equals(currentState)) return;
         currentState = state;
-        isPulsing = false;
-        orbCircle.animate().cancel();
 
         switch (state) {
             case "idle":
-                setOrbColor(COLOR_IDLE);
-                startPulse(1000, 1.15f);
+                orbCircle.setState(COLOR_IDLE, 1000, 1.15f, false);
                 break;
             case "listening":
-                setOrbColor(COLOR_LISTENING);
-                orbCircle.setAlpha(0.6f);
+                orbCircle.setState(COLOR_LISTENING, 0, 1f, true);
                 break;
             case "thinking":
-                setOrbColor(COLOR_THINKING);
-                startPulse(1200, 1.1f);
+                orbCircle.setState(COLOR_THINKING, 1200, 1.1f, false);
                 break;
             case "speaking":
-                setOrbColor(COLOR_SPEAKING);
-                startPulse(400, 1.2f);
+                orbCircle.setState(COLOR_SPEAKING, 400, 1.2f, true);
                 break;
             case "error":
-                setOrbColor(COLOR_ERROR);
-                orbCircle.setAlpha(0.6f);
+                orbCircle.setState(COLOR_ERROR, 0, 1f, false);
                 break;
         }
     }
 
-    private void setOrbColor(int color) {
-        if (orbCircle.getBackground() instanceof GradientDrawable) {
-            ((GradientDrawable) orbCircle.getBackground()).setColor(color);
+    private void updatePowerSave() {
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        if (orbCircle != null && powerManager != null) {
+            orbCircle.setPowerSave(powerManager.isPowerSaveMode());
+            orbCircle.setScreenOn(powerManager.isInteractive());
         }
     }
 
-    private void startPulse(int duration, float scale) {
-        isPulsing = true;
-        pulseAnimation(duration, scale);
-    }
-
-    private void pulseAnimation(int duration, float scale) {
-        if (!isPulsing) return;
-        orbCircle.animate()
-                .scaleX(scale)
-                .scaleY(scale)
-                .alpha(0.4f)
-                .setDuration(duration)
-                .withEndAction(() -> {
-                    orbCircle.animate()
-                            .scaleX(1.0f)
-                            .scaleY(1.0f)
-                            .alpha(0.6f)
-                            .setDuration(duration)
-                            .withEndAction(() -> {
-                                if (isPulsing) pulseAnimation(duration, scale);
-                            });
-                });
-    }
-
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
@@ -302,13 +423,22 @@ public class OrbOverlayService extends Service {
         if (intent != null && ACTION_SHOW_ORB.equals(intent.getAction())) {
             showOrb();
         }
+        // A null intent is a sticky restart from the background: no microphone until
+        // the app starts the service again
+        if (intent != null) startVoiceCapture();
         return START_STICKY;
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        isPulsing = false;
+        instance = null;
+        mainHandler.removeCallbacks(frameRateReport);
+        if (dragController != null) dragController.release();
+        if (amplitudeFeed != null) amplitudeFeed.close();
+        if (voiceCapture != null) voiceCapture.stop();
+        if (backendEvents != null) backendEvents.close();
+        if (speechUploader != null) speechUploader.close();
         if (orbView != null && windowManager != null) {
             try { windowManager.removeView(orbView); } catch (Exception e) {}
         }
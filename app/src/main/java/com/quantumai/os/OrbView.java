@@ -0,0 +1,239 @@
+package com.quantumai.os;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+
+// The orb itself: a circle drawn straight onto the canvas, pulsed by a single
+// reusable ValueAnimator. Nothing is allocated per frame. The animator is paused
+// whenever the orb can't be seen or shouldn't cost power (hidden, screen off,
+// battery saver) and resumes where it left off.
+//
+// In audio-reactive states the pulse gives way to the live level from an
+// AmplitudeFeed whenever samples are arriving: the feed only schedules an
+// invalidate-on-animation, and each drawn frame takes the peak since the previous
+// one, so redraws never outnumber vsyncs however fast the feed runs.
+//
+// Frames drawn are counted and reported as a per-minute rate so idle cost can be
+// checked. The rate is taken over wall time, not per drawn frame, so a paused orb
+// reports close to zero; the owning service reports it on a timer and in
+// orb_stats, and the view logs the window that ends whenever the animator pauses.
+public class OrbView extends View implements AmplitudeFeed.Listener {
+
+    private static final String TAG = "QuantumOrb";
+    // View is sized for the largest pulse so it never clips
+    private static final float MAX_SCALE = 1.2f;
+    private static final float REST_ALPHA = 0.6f;
+    private static final float PULSE_ALPHA = 0.4f;
+    public static final long RATE_WINDOW_MS = 60_000;
+    private static final float LEVEL_ALPHA = 0.3f;
+    // Envelope time constants: quick to rise, slower to fall so speech doesn't flicker
+    private static final float ATTACK_MS = 30f;
+    private static final float RELEASE_MS = 150f;
+    // Without samples for this long the level falls to zero and the pulse returns
+    private static final long SAMPLE_TIMEOUT_MS = 250;
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final ValueAnimator pulse = ValueAnimator.ofFloat(0f, 1f);
+    private final int baseSize;
+
+    private int color;
+    private float pulseScale = 1f;
+    private boolean pulsing;
+    private float phase;
+
+    private AmplitudeFeed feed;
+    private boolean audioReactive;
+    // Set while audio is driving the orb; the pulse animator is paused meanwhile
+    private boolean audioActive;
+    // Read on the feed thread to decide whether a sample is worth a redraw
+    private volatile boolean acceptingLevels;
+    private float level;
+    private float targetLevel;
+    private long lastSampleTime;
+    private long lastLevelFrame;
+
+    private boolean screenOn = true;
+    private boolean powerSave;
+
+    private long rateWindowStart = SystemClock.uptimeMillis();
+    private int rateWindowFrames;
+
+    public OrbView(Context context, int baseSize) {
+        super(context);
+        this.baseSize = baseSize;
+        pulse.setRepeatCount(ValueAnimator.INFINITE);
+        pulse.setRepeatMode(ValueAnimator.REVERSE);
+        // getAnimatedFraction avoids boxing the value on every frame
+        pulse.addUpdateListener(animation -> {
+            phase = animation.getAnimatedFraction();
+            invalidate();
+        });
+    }
+
+    public void setAmplitudeFeed(AmplitudeFeed feed) {
+        this.feed = feed;
+        updatePlayback();
+    }
+
+    // One pulse cycle grows and fades over periodMs, then reverses; 0 holds still.
+    // audioReactive lets a live amplitude feed take over while it is streaming.
+    public void setState(int color, int periodMs, float scale, boolean audioReactive) {
+        this.color = color;
+        this.audioReactive = audioReactive;
+        if (!audioReactive) stopAudio();
+        pulsing = periodMs > 0;
+        pulseScale = Math.min(scale, MAX_SCALE);
+        pulse.cancel();
+        phase = 0f;
+        if (pulsing) pulse.setDuration(periodMs);
+        updatePlayback();
+        invalidate();
+    }
+
+    public void setScreenOn(boolean screenOn) {
+        this.screenOn = screenOn;
+        updatePlayback();
+    }
+
+    public void setPowerSave(boolean powerSave) {
+        this.powerSave = powerSave;
+        updatePlayback();
+    }
+
+    // Frames per minute since the current window started, idle time included
+    public int getFramesPerMinute() {
+        long elapsed = Math.max(1, SystemClock.uptimeMillis() - rateWindowStart);
+        return (int) (rateWindowFrames * RATE_WINDOW_MS / elapsed);
+    }
+
+    public String stats() {
+        return "framesPerMinute=" + getFramesPerMinute() + " windowSeconds="
+                + (SystemClock.uptimeMillis() - rateWindowStart) / 1000 + " animating="
+                + (pulse.isStarted() && !pulse.isPaused()) + " audioActive=" + audioActive;
+    }
+
+    // Logs the current window's rate and starts a new window
+    public void reportFrameRate(String reason) {
+        long now = SystemClock.uptimeMillis();
+        Log.d(TAG, "Orb rendering (" + reason + "): " + getFramesPerMinute() + " frames/min over "
+                + (now - rateWindowStart) / 1000 + "s");
+        rateWindowStart = now;
+        rateWindowFrames = 0;
+    }
+
+    @Override
+    public void onLevelAvailable() {
+        if (acceptingLevels) postInvalidateOnAnimation();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int size = (int) Math.ceil(baseSize * MAX_SCALE);
+        setMeasuredDimension(resolveSize(size, widthMeasureSpec), resolveSize(size, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (acceptingLevels) updateLevel();
+        float scale;
+        float alpha;
+        if (audioActive) {
+            scale = 1f + (MAX_SCALE - 1f) * level;
+            alpha = REST_ALPHA + LEVEL_ALPHA * level;
+        } else {
+            scale = 1f + (pulseScale - 1f) * phase;
+            alpha = REST_ALPHA + (PULSE_ALPHA - REST_ALPHA) * phase;
+        }
+        paint.setColor(color);
+        paint.setAlpha((int) (Color.alpha(color) * alpha));
+        canvas.drawCircle(getWidth() / 2f, getHeight() / 2f, baseSize / 2f * scale, paint);
+        countFrame();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updatePlayback();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updatePlayback();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        pulse.cancel();
+    }
+
+    private void updatePlayback() {
+        boolean visible = screenOn && !powerSave && isAttachedToWindow() && isShown();
+        acceptingLevels = visible && audioReactive && feed != null;
+        if (!acceptingLevels) stopAudio();
+
+        boolean run = pulsing && !audioActive && visible;
+        if (run) {
+            if (pulse.isPaused()) {
+                pulse.resume();
+            } else if (!pulse.isStarted()) {
+                pulse.start();
+            }
+        } else if (pulse.isStarted() && !pulse.isPaused()) {
+            pulse.pause();
+            reportFrameRate("paused");
+            // Battery saver keeps the orb visible, so settle it on its resting look
+            if (powerSave) {
+                phase = 0f;
+                invalidate();
+            }
+        }
+    }
+
+    // Moves the displayed level towards the latest peak; keeps frames coming until it settles
+    private void updateLevel() {
+        long now = SystemClock.uptimeMillis();
+        float sample = feed.takeLevel();
+        if (sample >= 0f) {
+            targetLevel = sample;
+            lastSampleTime = now;
+            if (!audioActive) {
+                audioActive = true;
+                lastLevelFrame = now;
+                updatePlayback();
+            }
+        }
+        if (!audioActive) return;
+
+        boolean timedOut = now - lastSampleTime > SAMPLE_TIMEOUT_MS;
+        if (timedOut) targetLevel = 0f;
+        float dt = Math.max(1, now - lastLevelFrame);
+        lastLevelFrame = now;
+        float tau = targetLevel > level ? ATTACK_MS : RELEASE_MS;
+        level += (targetLevel - level) * (1f - (float) Math.exp(-dt / tau));
+
+        if (timedOut && level < 0.01f) {
+            stopAudio();
+            updatePlayback();
+        } else {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    private void stopAudio() {
+        audioActive = false;
+        level = 0f;
+        targetLevel = 0f;
+    }
+
+    private void countFrame() {
+        rateWindowFrames++;
+    }
+}
@@ -1,16 +1,103 @@
 package com.quantumai.os;
 
 import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
 import android.accessibilityservice.GestureDescription;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Path;
+import android.graphics.Rect;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+public class QuantumAccessibilityService extends AccessibilityService implements CommandRouter.Host {
+
+    private static final String TAG = "QuantumAccessibility";
+    private static final int RECORDED_INTERACTIONS = AccessibilityEvent.TYPE_VIEW_CLICKED
+            | AccessibilityEvent.TYPE_VIEW_LONG_CLICKED
+            | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED
+            | AccessibilityEvent.TYPE_VIEW_FOCUSED
+            | AccessibilityEvent.TYPE_VIEW_SELECTED;
+    // Applied by UiTreeTracker as per-node deltas; without a source it rebuilds the tree
+    private static final int TREE_SOURCE_TYPES = AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED;
+    private static final long DEFAULT_AWAIT_TIMEOUT = 5000;
+    // Long moves are cut into continued strokes of at most this length
+    private static final long MAX_GESTURE_SEGMENT = 1000;
+    // Continuation gestures dispatched ahead of the one being performed
+    private static final int GESTURE_PIPELINE_DEPTH = 1;
+
+    private static final String CHANNEL_TOKEN_FILE = "command_channel.token";
+
+    // Set while connected, for in-process callers such as the WebView bridge
+    private static volatile QuantumAccessibilityService instance;
+
+    // A task longer than a frame on either thread is counted as an overrun
+    private static final long FRAME_NANOS = 16_000_000;
+    // Longest a worker drain runs before letting timers and gesture callbacks in
+    private static final long WORKER_DRAIN_NANOS = 8_000_000;
+
+    // Commands, event processing, gesture callbacks and timers all run here, so
+    // the main thread only copies events off the binder and hands them over
+    private final HandlerThread workerThread = new HandlerThread("QuantumAI-Worker",
+            Process.THREAD_PRIORITY_FOREGROUND);
+    private Handler workerHandler;
+    private WorkQueue workQueue;
+    // Events are bounded, unlike commands: a content-change storm can outrun a
+    // worker stuck in binder calls, and each queued copy holds its own memory
+    private BoundedHandoff<AccessibilityEvent> eventHandoff;
+    private final ThreadLoad workerLoad = new ThreadLoad("worker", FRAME_NANOS);
+    private final ThreadLoad mainLoad = new ThreadLoad("main", FRAME_NANOS);
+    private LooperMonitor workerMonitor;
+    // Off by default: it makes the main looper format a log line per message
+    private final LooperMonitor mainMonitor = new LooperMonitor(Looper.getMainLooper(), mainLoad);
+    // Event types the pipeline keeps, readable from the main thread without touching the pipeline
+    private volatile int acceptedTypes;
+    private final CommandMetrics metrics = new CommandMetrics();
+    private final CommandResultSink broadcastSink = new CommandResultSink() {
+        @Override
+        public void onResult(String action, boolean success, String message) {
+            sendResult(action, success, message, null);
+        }
 
-public class QuantumAccessibilityService extends AccessibilityService {
+        @Override
+        public void onPayload(String action, ByteBuffer payload, String message) {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            sendResult(action, true, message, bytes);
+        }
+    };
+    private CommandChannel commandChannel;
+    private volatile String channelToken;
+    private UiTreeTracker treeTracker;
+    private WorkflowRecorder recorder;
+    private MacroReplayer replayer;
+    private UiConditionWaiter conditionWaiter;
+    private EventPipeline eventPipeline;
+    private final ScreenSnapshotWriter snapshotWriter = new ScreenSnapshotWriter();
+    private GestureScheduler gestureScheduler;
+    private CommandRouter commandRouter;
+    private final Runnable pipelineFlush = () -> {
+        if (eventPipeline != null) eventPipeline.flush(SystemClock.uptimeMillis());
+    };
+    private final Rect eventBounds = new Rect();
 
     private BroadcastReceiver commandReceiver = new BroadcastReceiver() {
         @Override
@@ -19,13 +106,63 @@ public class QuantumAccessibilityService extends AccessibilityService {
             String params = intent.getStringExtra("params");
 
             if (action != null) {
-                executeAction(action, params);
+                commandRouter.dispatch(action, params, broadcastSink);
             }
         }
     };
 
+    // In-process entry point taking the same commands as the broadcast and socket
+    // paths; returns false if the service isn't connected. Also answers
+    // "channel_token", for the WebUI to hand to its backend: it is only given out
+    // here, never over the broadcast receiver (exported below API 33) or the channel.
+    public static boolean submit(String action, String params, CommandResultSink sink) {
+        QuantumAccessibilityService service = instance;
+        if (service == null) return false;
+        if ("channel_token".equals(action)) {
+            String token = service.channelToken;
+            if (token != null) {
+                sink.onResult(action, true, token);
+            } else {
+                sink.onResult(action, false, "Command channel unavailable");
+            }
+            return true;
+        }
+        service.commandRouter.dispatch(action, params, sink);
+        return true;
+    }
+
     @Override
     public void onServiceConnected() {
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+        workerMonitor = new LooperMonitor(workerThread.getLooper(), workerLoad);
+        workerMonitor.attach();
+        workQueue = new WorkQueue(workerHandler::post, workerLoad, WORKER_DRAIN_NANOS);
+        // One gesture in flight at a time; a second dispatchGesture would cancel the first
+        gestureScheduler = new GestureScheduler(workerHandler::post);
+        commandRouter = new CommandRouter(this, gestureScheduler, metrics, workQueue);
+
+        treeTracker = new UiTreeTracker(this);
+        conditionWaiter = new UiConditionWaiter(workerHandler, treeTracker.getIndex());
+        eventPipeline = new EventPipeline(this::dispatchUiEvent, delay -> {
+            workerHandler.removeCallbacks(pipelineFlush);
+            workerHandler.postDelayed(pipelineFlush, delay);
+        });
+        eventHandoff = new BoundedHandoff<>("events", workerHandler::post,
+                new BoundedHandoff.Receiver<AccessibilityEvent>() {
+                    @Override
+                    public void onItem(AccessibilityEvent event) {
+                        processEvent(event);
+                    }
+
+                    @Override
+                    public void onDropped(AccessibilityEvent event) {
+                        releaseEvent(event);
+                    }
+                }, WORKER_DRAIN_NANOS, eventPipeline.getQueueCapacity(), eventPipeline.getOverflowPolicy());
+        acceptedTypes = eventPipeline.getTypeMask();
+        workQueue.execute(treeTracker::rebuild);
+
         // Register broadcast receiver for commands from WebUI
         IntentFilter filter = new IntentFilter("com.quantumai.ACCESSIBILITY_ACTION");
         // Fix for Android 13+: Specify receiver export flag
@@ -34,11 +171,100 @@ public class QuantumAccessibilityService extends AccessibilityService {
         } else {
             registerReceiver(commandReceiver, filter);
         }
+
+        // Loopback channel for the local backend: pipelined, no Intent marshalling.
+        // Connections must present the per-install token, which only in-process
+        // callers can read (see submit)
+        try {
+            channelToken = CommandChannel.loadToken(new File(getFilesDir(), CHANNEL_TOKEN_FILE));
+            commandChannel = new CommandChannel(CommandChannel.DEFAULT_PORT, channelToken, commandRouter);
+            commandChannel.start();
+        } catch (Exception e) {
+            Log.e(TAG, "Command channel unavailable", e);
+            commandChannel = null;
+        }
+        instance = this;
     }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // Can be used for recording workflows in the future
+        if (eventHandoff == null || (event.getEventType() & acceptedTypes) == 0) return;
+        // The platform recycles the event when this returns, so the worker gets a copy
+        eventHandoff.offer(Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? new AccessibilityEvent(event) : AccessibilityEvent.obtain(event));
+    }
+
+    // Worker thread
+    private void processEvent(AccessibilityEvent event) {
+        try {
+            ingestEvent(event);
+        } finally {
+            releaseEvent(event);
+        }
+    }
+
+    private static void releaseEvent(AccessibilityEvent event) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) event.recycle();
+    }
+
+    private void ingestEvent(AccessibilityEvent event) {
+        int type = event.getEventType();
+        if (!eventPipeline.accepts(type)) return;
+
+        UiEvent uiEvent = eventPipeline.obtain();
+        uiEvent.type = type;
+        uiEvent.time = event.getEventTime();
+        uiEvent.packageName = event.getPackageName() != null ? event.getPackageName().toString() : null;
+        uiEvent.className = event.getClassName() != null ? event.getClassName().toString() : null;
+        uiEvent.windowId = event.getWindowId();
+        uiEvent.contentChangeTypes = event.getContentChangeTypes();
+        // getSource is a binder call: only for the tree tracker, and for interactions
+        // while a recording is running
+        if ((type & TREE_SOURCE_TYPES) != 0 || recorder != null && (type & RECORDED_INTERACTIONS) != 0) {
+            uiEvent.source = event.getSource();
+        }
+        eventPipeline.ingest(uiEvent, SystemClock.uptimeMillis());
+    }
+
+    // Every consumer sees events only after filtering and coalescing
+    private void dispatchUiEvent(UiEvent event) {
+        if (treeTracker != null) {
+            treeTracker.onEvent(event);
+        }
+        if (recorder != null) {
+            recordEvent(event);
+        }
+        if (conditionWaiter != null) {
+            conditionWaiter.onEvent(event.type, event.packageName);
+        }
+        if (replayer != null) {
+            replayer.onEvent(event.type, event.packageName);
+        }
+    }
+
+    private void recordEvent(UiEvent event) {
+        int type = event.type;
+        String node = event.className;
+        String text = null;
+        int left = 0, top = 0, right = 0, bottom = 0;
+
+        // Only user interactions carry their source node; content and window churn is
+        // recorded by type, package and class alone
+        if ((type & RECORDED_INTERACTIONS) != 0) {
+            AccessibilityNodeInfo source = (AccessibilityNodeInfo) event.source;
+            if (source != null) {
+                String viewId = source.getViewIdResourceName();
+                if (viewId != null) node = viewId;
+                CharSequence sourceText = source.getText();
+                if (sourceText != null) text = sourceText.toString();
+                source.getBoundsInScreen(eventBounds);
+                left = eventBounds.left;
+                top = eventBounds.top;
+                right = eventBounds.right;
+                bottom = eventBounds.bottom;
+            }
+        }
+        recorder.record(type, event.time, event.packageName, node, text, left, top, right, bottom);
     }
 
     @Override
@@ -46,133 +272,714 @@ public class QuantumAccessibilityService extends AccessibilityService {
         // Required override
     }
 
-    private void executeAction(String action, String params) {
+    // Worker thread: the actions CommandRouter leaves to the service
+    @Override
+    public void executeOther(String action, String params, CommandResultSink sink) {
         switch (action) {
-            case "tap":
-                executeTap(params);
+            case "thread_stats":
+                // "main=on" times every main-looper message until "main=off"
+                if ("main=on".equals(params)) {
+                    mainMonitor.attach();
+                } else if ("main=off".equals(params)) {
+                    mainMonitor.detach();
+                }
+                sink.onResult("thread_stats", true, mainLoad.stats() + "\n" + workerLoad.stats()
+                        + "\n" + eventHandoff.stats());
                 break;
 
-            case "swipe":
-                executeSwipe(params);
+            case "ping":
+                executePing(params, sink);
                 break;
 
-            case "back":
-                performGlobalAction(GLOBAL_ACTION_BACK);
+            case "find":
+                executeFind(params, sink);
                 break;
 
-            case "home":
-                performGlobalAction(GLOBAL_ACTION_HOME);
+            case "snapshot":
+                executeSnapshot(params, sink);
                 break;
 
-            case "recents":
-                performGlobalAction(GLOBAL_ACTION_RECENTS);
+            case "record_start":
+                startRecording(params, sink);
                 break;
 
-            case "notifications":
-                performGlobalAction(GLOBAL_ACTION_NOTIFICATIONS);
+            case "record_stop":
+                stopRecording(sink);
                 break;
 
-            case "quick_settings":
-                performGlobalAction(GLOBAL_ACTION_QUICK_SETTINGS);
+            case "await":
+                executeAwait(params, sink);
+                break;
+
+            case "event_config":
+                configureEvents(params, sink);
+                break;
+
+            case "event_stats":
+                sink.onResult("event_stats", true, eventPipeline.stats() + "\n" + eventHandoff.stats());
+                break;
+
+            case "replay":
+                startReplay(params, sink);
+                break;
+
+            case "replay_stop":
+                if (replayer != null && !replayer.isFinished()) {
+                    replayer.cancel();
+                    sink.onResult("replay_stop", true, "Replay cancelled");
+                } else {
+                    sink.onResult("replay_stop", false, "Nothing is replaying");
+                }
+                break;
+
+            case "set_text":
+                executeNodeAction(action, params, sink);
+                break;
+
+            default:
+                sink.onResult(action, false, "Unknown action");
                 break;
         }
     }
 
-    private void executeTap(String params) {
-        if (params == null) return;
+    // Worker thread, when the gesture queue reaches the command
+    @Override
+    public void executeQueued(String action, String params, CommandResultSink sink) {
+        switch (action) {
+            case "script":
+                executeScript(params, sink);
+                break;
+            case "gesture":
+                executeGesture(params, sink);
+                break;
+            default:
+                // Node actions may fall back to a tap or drag gesture
+                executeNodeAction(action, params, sink);
+                break;
+        }
+    }
+
+    @Override
+    public int globalActionFor(String name) {
+        switch (name) {
+            case "back":
+                return GLOBAL_ACTION_BACK;
+            case "home":
+                return GLOBAL_ACTION_HOME;
+            case "recents":
+                return GLOBAL_ACTION_RECENTS;
+            case "notifications":
+                return GLOBAL_ACTION_NOTIFICATIONS;
+            case "quick_settings":
+                return GLOBAL_ACTION_QUICK_SETTINGS;
+            default:
+                return -1;
+        }
+    }
+
+    @Override
+    public boolean dispatchTap(int x, int y, CommandRouter.GestureCallback callback) {
+        Path path = new Path();
+        path.moveTo(x, y);
+
+        GestureDescription.Builder builder = new GestureDescription.Builder();
+        GestureDescription.StrokeDescription stroke =
+                new GestureDescription.StrokeDescription(path, 0, 50);
+        builder.addStroke(stroke);
+        return dispatchGesture(builder.build(), gestureCallback(callback), workerHandler);
+    }
+
+    @Override
+    public boolean dispatchSwipe(int x1, int y1, int x2, int y2, int duration, CommandRouter.GestureCallback callback) {
+        Path path = new Path();
+        path.moveTo(x1, y1);
+        path.lineTo(x2, y2);
+
+        GestureDescription.Builder builder = new GestureDescription.Builder();
+        GestureDescription.StrokeDescription stroke =
+                new GestureDescription.StrokeDescription(path, 0, duration);
+        builder.addStroke(stroke);
+        return dispatchGesture(builder.build(), gestureCallback(callback), workerHandler);
+    }
+
+    private static GestureResultCallback gestureCallback(CommandRouter.GestureCallback callback) {
+        return new GestureResultCallback() {
+            @Override
+            public void onCompleted(GestureDescription gestureDescription) {
+                callback.onCompleted();
+            }
+
+            @Override
+            public void onCancelled(GestureDescription gestureDescription) {
+                callback.onCancelled();
+            }
+        };
+    }
 
+    private void executeScript(String params, CommandResultSink sink) {
+        List<GestureScript.Segment> segments;
+        GestureScript script;
         try {
-            // Parse coordinates: "x,y"
-            String[] coords = params.split(",");
-            if (coords.length != 2) return;
+            // Parse script: "tap:x,y;wait:ms;swipe:x1,y1,x2,y2[,duration];back"
+            script = GestureScript.parse(params);
+            for (GestureScript.Step step : script.getSteps()) {
+                if (step.kind == GestureScript.STEP_GLOBAL && globalActionFor(step.name) == -1) {
+                    throw new IllegalArgumentException("unknown step '" + step.name + "'");
+                }
+            }
+            segments = script.plan(GestureDescription.getMaxStrokeCount(),
+                    GestureDescription.getMaxGestureDuration());
+        } catch (Exception e) {
+            sink.onResult("script", false, "Error: " + e.getMessage());
+            return;
+        }
+        new ScriptRun(script, segments, sink).next();
+    }
+
+    // Walks the planned segments, one dispatchGesture per gesture segment, and
+    // reports every step's outcome in a single aggregated result.
+    private class ScriptRun {
+        private final List<GestureScript.Step> steps;
+        private final List<GestureScript.Segment> segments;
+        private final String[] outcomes;
+        private final CommandResultSink sink;
+        private int segmentIndex = 0;
+        private int waitsSettledThrough = 0;
+
+        ScriptRun(GestureScript script, List<GestureScript.Segment> segments, CommandResultSink sink) {
+            this.steps = script.getSteps();
+            this.sink = sink;
+            this.segments = segments;
+            this.outcomes = new String[steps.size()];
+            for (int i = 0; i < outcomes.length; i++) outcomes[i] = "skipped";
+        }
 
-            int x = Integer.parseInt(coords[0].trim());
-            int y = Integer.parseInt(coords[1].trim());
+        void next() {
+            if (segmentIndex >= segments.size()) {
+                settleWaits(steps.size());
+                finish();
+                return;
+            }
+            GestureScript.Segment segment = segments.get(segmentIndex++);
+            if (segment.delayBefore > 0) {
+                workerHandler.postDelayed(() -> run(segment), segment.delayBefore);
+            } else {
+                run(segment);
+            }
+        }
 
-            // Create tap gesture
-            Path path = new Path();
-            path.moveTo(x, y);
+        private void run(GestureScript.Segment segment) {
+            if (segment.steps.isEmpty()) {
+                next();
+            } else if (segment.gesture) {
+                runGesture(segment);
+            } else {
+                GestureScript.Step step = segment.steps.get(0);
+                boolean ok = performGlobalAction(globalActionFor(step.name));
+                complete(segment, ok ? "ok" : "failed", ok);
+            }
+        }
 
+        private void runGesture(GestureScript.Segment segment) {
+            sink.mark(CommandMetrics.MARK_PARSED);
             GestureDescription.Builder builder = new GestureDescription.Builder();
-            GestureDescription.StrokeDescription stroke =
-                    new GestureDescription.StrokeDescription(path, 0, 50);
-            builder.addStroke(stroke);
+            for (int i = 0; i < segment.steps.size(); i++) {
+                GestureScript.Step step = segment.steps.get(i);
+                Path path = new Path();
+                path.moveTo(step.x1, step.y1);
+                if (step.kind == GestureScript.STEP_SWIPE) {
+                    path.lineTo(step.x2, step.y2);
+                }
+                builder.addStroke(new GestureDescription.StrokeDescription(
+                        path, segment.startTimes.get(i), step.duration));
+            }
 
-            // Dispatch gesture
-            dispatchGesture(builder.build(), new GestureResultCallback() {
+            boolean dispatched = dispatchGesture(builder.build(), new GestureResultCallback() {
                 @Override
                 public void onCompleted(GestureDescription gestureDescription) {
-                    sendResult("tap", true, "Tapped at " + x + "," + y);
+                    complete(segment, "ok", true);
                 }
 
                 @Override
                 public void onCancelled(GestureDescription gestureDescription) {
-                    sendResult("tap", false, "Tap cancelled");
+                    complete(segment, "cancelled", false);
                 }
-            }, null);
+            }, workerHandler);
 
+            if (dispatched) {
+                sink.mark(CommandMetrics.MARK_DISPATCHED);
+            } else {
+                complete(segment, "failed", false);
+            }
+        }
+
+        private void complete(GestureScript.Segment segment, String outcome, boolean ok) {
+            int last = 0;
+            for (GestureScript.Step step : segment.steps) {
+                outcomes[step.index] = outcome;
+                last = step.index;
+            }
+            if (!ok) {
+                finish();
+                return;
+            }
+            settleWaits(last);
+            next();
+        }
+
+        // Waits before a finished segment have elapsed by definition
+        private void settleWaits(int upTo) {
+            for (int i = waitsSettledThrough; i < upTo; i++) {
+                if (steps.get(i).kind == GestureScript.STEP_WAIT) outcomes[i] = "ok";
+            }
+            waitsSettledThrough = Math.max(waitsSettledThrough, upTo);
+        }
+
+        private void finish() {
+            int okCount = 0;
+            StringBuilder message = new StringBuilder();
+            for (int i = 0; i < outcomes.length; i++) {
+                if ("ok".equals(outcomes[i])) okCount++;
+                message.append(i == 0 ? "" : ",").append(steps.get(i).name).append('=').append(outcomes[i]);
+            }
+            message.insert(0, okCount + "/" + outcomes.length + " steps ok: ");
+            sink.onResult("script", okCount == outcomes.length, message.toString());
+        }
+    }
+
+    private void executeGesture(String params, CommandResultSink sink) {
+        List<GesturePlanner.Segment> segments;
+        int fingers;
+        try {
+            // Parse fingers: "down:x,y;line:x,y,ms;hold:ms|down:x,y;quad:cx,cy,x,y,ms"
+            GesturePlanner planner = GesturePlanner.parse(params);
+            fingers = planner.getFingerCount();
+            segments = planner.plan(GestureDescription.getMaxStrokeCount(),
+                    Math.min(MAX_GESTURE_SEGMENT, GestureDescription.getMaxGestureDuration()));
         } catch (Exception e) {
-            sendResult("tap", false, "Error: " + e.getMessage());
+            sink.onResult("gesture", false, "Error: " + e.getMessage());
+            return;
         }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            for (GesturePlanner.Segment segment : segments) {
+                for (GesturePlanner.Stroke stroke : segment.strokes) {
+                    if (stroke.willContinue) {
+                        sink.onResult("gesture", false, "Error: continued strokes need Android 8.0");
+                        return;
+                    }
+                }
+            }
+        }
+        new GestureRun(segments, fingers, sink).dispatchNext();
     }
 
-    private void executeSwipe(String params) {
-        if (params == null) return;
+    // Performs planned segments as one continuous touch. Each segment after the
+    // first continues the previous one's strokes, and is dispatched as soon as the
+    // previous one has been accepted: the injector queues it behind the events
+    // already scheduled, so there is no gap between segments waiting for callbacks.
+    private class GestureRun {
+        private final List<GesturePlanner.Segment> segments;
+        private final GestureDescription.StrokeDescription[] lastStrokes;
+        private final CommandResultSink sink;
+        private final long startedAt = SystemClock.uptimeMillis();
+        private int dispatched = 0;
+        private int completed = 0;
+        private boolean finished = false;
+
+        GestureRun(List<GesturePlanner.Segment> segments, int fingers, CommandResultSink sink) {
+            this.segments = segments;
+            this.lastStrokes = new GestureDescription.StrokeDescription[fingers];
+            this.sink = sink;
+        }
+
+        void dispatchNext() {
+            while (!finished && dispatched < segments.size() && dispatched - completed <= GESTURE_PIPELINE_DEPTH) {
+                sink.mark(CommandMetrics.MARK_PARSED);
+                if (!dispatchGesture(build(segments.get(dispatched)), callback, workerHandler)) {
+                    fail("rejected");
+                    return;
+                }
+                sink.mark(CommandMetrics.MARK_DISPATCHED);
+                dispatched++;
+            }
+        }
 
+        private GestureDescription build(GesturePlanner.Segment segment) {
+            GestureDescription.Builder builder = new GestureDescription.Builder();
+            for (GesturePlanner.Stroke stroke : segment.strokes) {
+                Path path = new Path();
+                path.moveTo(stroke.points[0], stroke.points[1]);
+                for (int i = 2; i < stroke.points.length; i += 2) {
+                    path.lineTo(stroke.points[i], stroke.points[i + 1]);
+                }
+                GestureDescription.StrokeDescription description;
+                if (stroke.continued) {
+                    description = lastStrokes[stroke.finger].continueStroke(path, 0, segment.duration, stroke.willContinue);
+                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    description = new GestureDescription.StrokeDescription(path, 0, segment.duration, stroke.willContinue);
+                } else {
+                    description = new GestureDescription.StrokeDescription(path, 0, segment.duration);
+                }
+                lastStrokes[stroke.finger] = description;
+                builder.addStroke(description);
+            }
+            return builder.build();
+        }
+
+        private final GestureResultCallback callback = new GestureResultCallback() {
+            @Override
+            public void onCompleted(GestureDescription gestureDescription) {
+                if (finished) return;
+                completed++;
+                if (completed == segments.size()) {
+                    finished = true;
+                    sink.onResult("gesture", true, "Performed " + lastStrokes.length + " finger(s) in "
+                            + segments.size() + " segment(s), " + (SystemClock.uptimeMillis() - startedAt) + "ms");
+                } else {
+                    dispatchNext();
+                }
+            }
+
+            @Override
+            public void onCancelled(GestureDescription gestureDescription) {
+                fail("cancelled");
+            }
+        };
+
+        private void fail(String reason) {
+            if (finished) return;
+            finished = true;
+            sink.onResult("gesture", false, "Gesture " + reason + " at segment " + (completed + 1) + "/" + segments.size());
+        }
+    }
+
+    private void executeSnapshot(String params, CommandResultSink sink) {
+        // Parse params: "budget=N;since=V", both optional
+        int budget = 0;
+        long since = 0;
         try {
-            // Parse swipe: "x1,y1,x2,y2,duration"
-            String[] parts = params.split(",");
-            if (parts.length < 4) return;
+            if (params != null) {
+                for (String part : params.split(";")) {
+                    int eq = part.indexOf('=');
+                    if (eq < 0) continue;
+                    String key = part.substring(0, eq).trim();
+                    String value = part.substring(eq + 1).trim();
+                    if (key.equals("budget")) budget = Integer.parseInt(value);
+                    else if (key.equals("since")) since = Long.parseLong(value);
+                }
+            }
+        } catch (Exception e) {
+            sink.onResult("snapshot", false, "Error: " + e.getMessage());
+            return;
+        }
 
-            int x1 = Integer.parseInt(parts[0].trim());
-            int y1 = Integer.parseInt(parts[1].trim());
-            int x2 = Integer.parseInt(parts[2].trim());
-            int y2 = Integer.parseInt(parts[3].trim());
-            int duration = parts.length > 4 ? Integer.parseInt(parts[4].trim()) : 300;
+        UiNodeIndex index = treeTracker.getIndex();
+        if (index.getRoot() == null) treeTracker.rebuild();
+        ByteBuffer payload = snapshotWriter.write(index.getRoot(), budget, since);
+        sink.onPayload("snapshot", payload, snapshotWriter.getRowCount() + " rows v" + snapshotWriter.getVersion()
+                + (snapshotWriter.wasTruncated() ? " truncated" : "") + " " + payload.remaining() + " bytes");
+    }
 
-            // Create swipe gesture
-            Path path = new Path();
-            path.moveTo(x1, y1);
-            path.lineTo(x2, y2);
+    private void executeFind(String params, CommandResultSink sink) {
+        if (params == null || params.indexOf('=') < 0) {
+            sink.onResult("find", false, "Error: expected id=, text=, desc= or at=x,y");
+            return;
+        }
 
-            GestureDescription.Builder builder = new GestureDescription.Builder();
-            GestureDescription.StrokeDescription stroke =
-                    new GestureDescription.StrokeDescription(path, 0, duration);
-            builder.addStroke(stroke);
+        // Parse query: "key=value"
+        int eq = params.indexOf('=');
+        String key = params.substring(0, eq).trim();
+        String value = params.substring(eq + 1);
+        UiNodeIndex index = treeTracker.getIndex();
+        if (index.getRoot() == null) treeTracker.rebuild();
 
-            // Dispatch gesture
-            dispatchGesture(builder.build(), new GestureResultCallback() {
-                @Override
-                public void onCompleted(GestureDescription gestureDescription) {
-                    sendResult("swipe", true, "Swiped from " + x1 + "," + y1 + " to " + x2 + "," + y2);
+        List<UiNode> matches;
+        try {
+            switch (key) {
+                case "id":
+                    matches = index.findByViewId(value.trim());
+                    break;
+                case "text":
+                    matches = index.findByText(value);
+                    break;
+                case "desc":
+                    matches = index.findByDescription(value);
+                    break;
+                case "at": {
+                    String[] coords = value.split(",");
+                    UiNode hit = index.findAt(Integer.parseInt(coords[0].trim()), Integer.parseInt(coords[1].trim()));
+                    matches = hit != null ? Collections.singletonList(hit) : Collections.<UiNode>emptyList();
+                    break;
                 }
+                default:
+                    sink.onResult("find", false, "Error: unknown key '" + key + "'");
+                    return;
+            }
+        } catch (Exception e) {
+            sink.onResult("find", false, "Error: " + e.getMessage());
+            return;
+        }
 
-                @Override
-                public void onCancelled(GestureDescription gestureDescription) {
-                    sendResult("swipe", false, "Swipe cancelled");
+        StringBuilder message = new StringBuilder().append(matches.size()).append(" found");
+        for (UiNode node : matches) {
+            message.append("; ").append(node);
+        }
+        sink.onResult("find", !matches.isEmpty(), message.toString());
+    }
+
+    private void executeNodeAction(String action, String params, CommandResultSink sink) {
+        if (params == null) {
+            sink.onResult(action, false, "Error: missing selector");
+            return;
+        }
+
+        // Parse: "selector" or, for set_text, "selector|text"
+        String selectorText = params;
+        String text = null;
+        if (action.equals("set_text")) {
+            int bar = params.indexOf('|');
+            if (bar < 0) {
+                sink.onResult(action, false, "Error: expected selector|text");
+                return;
+            }
+            selectorText = params.substring(0, bar);
+            text = params.substring(bar + 1);
+        }
+
+        NodeSelector selector;
+        try {
+            selector = NodeSelector.compile(selectorText.trim());
+        } catch (Exception e) {
+            sink.onResult(action, false, "Error: " + e.getMessage());
+            return;
+        }
+
+        UiNode node = selector.findFirst(treeTracker.getIndex());
+        if (node == null) {
+            // The index may lag behind the screen; resync once before giving up
+            treeTracker.rebuild();
+            node = selector.findFirst(treeTracker.getIndex());
+        }
+        if (node == null) {
+            sink.onResult(action, false, "No node matches " + selector);
+            return;
+        }
+
+        switch (action) {
+            case "click": {
+                UiNode target = actionable(node, UiNode.FLAG_CLICKABLE);
+                if (target != null && perform(target, AccessibilityNodeInfo.ACTION_CLICK, null)) {
+                    sink.onResult(action, true, "Clicked " + target);
+                } else {
+                    commandRouter.tap(action, node.centerX(), node.centerY(), sink);
                 }
-            }, null);
+                break;
+            }
+            case "set_text": {
+                UiNode target = actionable(node, UiNode.FLAG_EDITABLE);
+                Bundle arguments = new Bundle();
+                arguments.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, text);
+                boolean ok = target != null && perform(target, AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
+                // There is no gesture equivalent for typing
+                sink.onResult(action, ok, ok ? "Set text on " + target : "No editable node for " + selector);
+                break;
+            }
+            default: {
+                boolean forward = action.equals("scroll");
+                UiNode target = actionable(node, UiNode.FLAG_SCROLLABLE);
+                int nodeAction = forward
+                        ? AccessibilityNodeInfo.ACTION_SCROLL_FORWARD : AccessibilityNodeInfo.ACTION_SCROLL_BACKWARD;
+                if (target != null && perform(target, nodeAction, null)) {
+                    sink.onResult(action, true, "Scrolled " + target);
+                } else {
+                    // Drag across the middle half of the node instead
+                    int quarter = (node.bottom - node.top) / 4;
+                    int from = forward ? node.bottom - quarter : node.top + quarter;
+                    int to = forward ? node.top + quarter : node.bottom - quarter;
+                    commandRouter.swipe(action, node.centerX(), from, node.centerX(), to, 300, sink);
+                }
+                break;
+            }
+        }
+    }
 
+    // The node itself or its nearest ancestor that supports the action
+    private static UiNode actionable(UiNode node, int flag) {
+        for (UiNode current = node; current != null; current = current.parent) {
+            if (current.has(flag) && current.handle instanceof AccessibilityNodeInfo) return current;
+        }
+        return null;
+    }
+
+    private static boolean perform(UiNode node, int nodeAction, Bundle arguments) {
+        try {
+            AccessibilityNodeInfo info = (AccessibilityNodeInfo) node.handle;
+            return arguments != null ? info.performAction(nodeAction, arguments) : info.performAction(nodeAction);
         } catch (Exception e) {
-            sendResult("swipe", false, "Error: " + e.getMessage());
+            // Stale node: the view is gone
+            return false;
         }
     }
 
-    private void sendResult(String action, boolean success, String message) {
+    private void startRecording(String params, CommandResultSink sink) {
+        if (recorder != null) {
+            sink.onResult("record_start", false, "Already recording to " + recorder.getFile());
+            return;
+        }
+        String name = params != null && !params.trim().isEmpty() ? params.trim() : "workflow.qwr";
+        if (name.contains("/")) {
+            sink.onResult("record_start", false, "Error: expected a plain file name");
+            return;
+        }
+        try {
+            recorder = new WorkflowRecorder(new File(new File(getFilesDir(), "workflows"), name));
+            sink.onResult("record_start", true, "Recording to " + recorder.getFile());
+        } catch (IOException e) {
+            sink.onResult("record_start", false, "Error: " + e.getMessage());
+        }
+    }
+
+    private void stopRecording(CommandResultSink sink) {
+        if (recorder == null) {
+            sink.onResult("record_stop", false, "Not recording");
+            return;
+        }
+        WorkflowRecorder stopped = recorder;
+        recorder = null;
+        stopped.close();
+        sink.onResult("record_stop", true, "Recorded " + stopped.getRecorded() + " events ("
+                + stopped.getDropped() + " dropped) to " + stopped.getFile());
+    }
+
+    private void configureEvents(String params, CommandResultSink sink) {
+        try {
+            eventPipeline.configure(params != null ? params : "");
+        } catch (Exception e) {
+            sink.onResult("event_config", false, "Error: " + e.getMessage());
+            return;
+        }
+
+        // Filtered types are also dropped at the source so they never cross IPC
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info != null && info.eventTypes != eventPipeline.getTypeMask()) {
+            info.eventTypes = eventPipeline.getTypeMask();
+            setServiceInfo(info);
+        }
+        acceptedTypes = eventPipeline.getTypeMask();
+        eventHandoff.configure(eventPipeline.getQueueCapacity(), eventPipeline.getOverflowPolicy());
+        sink.onResult("event_config", true, eventPipeline.stats() + "\n" + eventHandoff.stats());
+    }
+
+    private void executeAwait(String params, CommandResultSink sink) {
+        // Parse: "condition[|timeoutMs]", e.g. "node:text=Send|3000", "package:com.app", "idle:300"
+        UiCondition condition;
+        long timeout = DEFAULT_AWAIT_TIMEOUT;
+        try {
+            String conditionText = params;
+            int bar = params != null ? params.lastIndexOf('|') : -1;
+            if (bar >= 0) {
+                conditionText = params.substring(0, bar);
+                timeout = Long.parseLong(params.substring(bar + 1).trim());
+            }
+            condition = UiCondition.parse(conditionText);
+        } catch (Exception e) {
+            sink.onResult("await", false, "Error: " + e.getMessage());
+            return;
+        }
+        conditionWaiter.await(condition, timeout, sink);
+    }
+
+    private void startReplay(String params, CommandResultSink sink) {
+        if (replayer != null && !replayer.isFinished()) {
+            sink.onResult("replay", false, "A replay is already running");
+            return;
+        }
+
+        // Parse: "file[|fast|faithful][|stepTimeoutMs]"
+        String[] parts = params != null ? params.split("\\|") : new String[0];
+        String name = parts.length > 0 && !parts[0].trim().isEmpty() ? parts[0].trim() : "workflow.qwr";
+        boolean faithful = parts.length > 1 && parts[1].trim().equals("faithful");
+        Macro macro;
+        long stepTimeout;
+        try {
+            if (name.contains("/")) throw new IllegalArgumentException("expected a plain file name");
+            stepTimeout = parts.length > 2 ? Long.parseLong(parts[2].trim()) : MacroReplayer.DEFAULT_STEP_TIMEOUT;
+            macro = Macro.fromEvents(WorkflowReader.read(new File(new File(getFilesDir(), "workflows"), name)));
+        } catch (Exception e) {
+            sink.onResult("replay", false, "Error: " + e.getMessage());
+            return;
+        }
+        if (macro.getSteps().isEmpty()) {
+            sink.onResult("replay", false, "Recording has no replayable steps");
+            return;
+        }
+
+        replayer = new MacroReplayer(macro, faithful, stepTimeout, workerHandler,
+                commandRouter::execute, treeTracker.getIndex(), sink);
+        replayer.start();
+    }
+
+    // Params may carry the sender's SystemClock.elapsedRealtimeNanos() (CLOCK_BOOTTIME)
+    // so command-to-dispatch latency can be compared across the broadcast and socket paths
+    private void executePing(String params, CommandResultSink sink) {
+        String message = "pong";
+        if (params != null && !params.isEmpty()) {
+            try {
+                long sentAt = Long.parseLong(params.trim());
+                message += " dispatch_us=" + (SystemClock.elapsedRealtimeNanos() - sentAt) / 1000;
+            } catch (NumberFormatException e) {
+                // Plain ping
+            }
+        }
+        sink.onResult("ping", true, message);
+    }
+
+    private void sendResult(String action, boolean success, String message, byte[] payload) {
         Intent intent = new Intent("com.quantumai.ACCESSIBILITY_RESULT");
         intent.putExtra("action", action);
         intent.putExtra("success", success);
         intent.putExtra("message", message);
+        if (payload != null) intent.putExtra("payload", payload);
+        // Results carry snapshots and on-screen text; only this app may receive them
+        intent.setPackage(getPackageName());
         sendBroadcast(intent);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        instance = null;
+        if (commandChannel != null) {
+            commandChannel.close();
+        }
         try {
             unregisterReceiver(commandReceiver);
         } catch (Exception e) {
             // Receiver not registered
         }
+        mainMonitor.detach();
+        if (workQueue == null) return;
+
+        // Posted straight to the worker, not through workQueue: a drain that runs over
+        // budget re-posts itself, and a post after quitSafely is dropped. Commands
+        // already handed over are run first, then the thread exits.
+        workerHandler.post(() -> {
+            workQueue.drainAll();
+            if (recorder != null) {
+                recorder.close();
+                recorder = null;
+            }
+            if (replayer != null) {
+                replayer.cancel();
+            }
+            if (conditionWaiter != null) {
+                conditionWaiter.cancelAll();
+            }
+            gestureScheduler.cancelAll("Service stopped");
+            workerHandler.removeCallbacks(pipelineFlush);
+            eventHandoff.clear();
+            workerMonitor.detach();
+        });
+        workerThread.quitSafely();
     }
 }
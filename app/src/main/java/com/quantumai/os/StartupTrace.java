@@ -0,0 +1,70 @@
+package com.quantumai.os;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cold-start instrumentation. Phases show up as trace sections in Perfetto /
+// systrace, and each mark records its time since the process started, so the
+// "QuantumStartup" summary logged at interactive can be compared across releases:
+//
+//   adb logcat -s QuantumStartup
+public final class StartupTrace {
+
+    private static final String TAG = "QuantumStartup";
+
+    private static final List<String> marks = new ArrayList<>();
+    private static boolean reported = false;
+
+    private StartupTrace() {
+    }
+
+    // Milliseconds since the process was forked
+    public static long sinceProcessStart() {
+        return SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+    }
+
+    public static void begin(String section) {
+        Trace.beginSection(section);
+    }
+
+    public static void end(String phase) {
+        Trace.endSection();
+        mark(phase);
+    }
+
+    public static void mark(String phase) {
+        long at = sinceProcessStart();
+        synchronized (marks) {
+            marks.add(phase + "=" + at);
+        }
+        Log.d(TAG, phase + " at +" + at + "ms");
+    }
+
+    // Cross-thread phases (e.g. the backend probe) can't use nested sections
+    public static void beginAsync(String section, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.beginAsyncSection(section, cookie);
+    }
+
+    public static void endAsync(String section, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.endAsyncSection(section, cookie);
+    }
+
+    // Logs every mark once, as a single line, when the UI becomes interactive
+    public static void reportInteractive() {
+        synchronized (marks) {
+            if (reported) return;
+            reported = true;
+        }
+        mark("interactive");
+        synchronized (marks) {
+            Log.i(TAG, "Time to interactive: " + TextUtils.join(", ", marks));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.quantumai.os;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Holds pending await commands and answers each one from the event stream the
+// moment its condition holds, or when its timeout expires.
+public class UiConditionWaiter {
+
+    // AccessibilityEvent types that can change what a condition sees
+    private static final int TYPE_WINDOW_STATE_CHANGED = 32;
+    private static final int TYPE_WINDOW_CONTENT_CHANGED = 2048;
+    private static final int TYPE_VIEW_SCROLLED = 4096;
+
+    private final Handler handler;
+    private final UiNodeIndex index;
+    private final List<Pending> pending = new ArrayList<>();
+    private String windowPackage;
+
+    private class Pending {
+        final UiCondition condition;
+        final CommandResultSink sink;
+        final long startedAt = SystemClock.uptimeMillis();
+        final Runnable timeout = () -> finish(this, false, "Timed out");
+        final Runnable idle = () -> finish(this, true, "Idle");
+
+        Pending(UiCondition condition, CommandResultSink sink) {
+            this.condition = condition;
+            this.sink = sink;
+        }
+    }
+
+    public UiConditionWaiter(Handler handler, UiNodeIndex index) {
+        this.handler = handler;
+        this.index = index;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void await(UiCondition condition, long timeoutMillis, CommandResultSink sink) {
+        Pending wait = new Pending(condition, sink);
+        if (condition.kind == UiCondition.KIND_IDLE) {
+            handler.postDelayed(wait.idle, condition.idleMillis);
+        } else if (condition.isSatisfied(index, currentPackage())) {
+            sink.onResult("await", true, "Satisfied " + condition + " after 0ms");
+            return;
+        }
+        pending.add(wait);
+        handler.postDelayed(wait.timeout, timeoutMillis);
+    }
+
+    // Called for every accessibility event after the UI index has been updated
+    public void onEvent(int type, String packageName) {
+        if (type == TYPE_WINDOW_STATE_CHANGED && packageName != null) {
+            windowPackage = packageName;
+        }
+        if (pending.isEmpty()) return;
+        if (type != TYPE_WINDOW_STATE_CHANGED && type != TYPE_WINDOW_CONTENT_CHANGED && type != TYPE_VIEW_SCROLLED) {
+            return;
+        }
+
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            Pending wait = pending.get(i);
+            if (wait.condition.kind == UiCondition.KIND_IDLE) {
+                // Any change restarts the quiet period
+                handler.removeCallbacks(wait.idle);
+                handler.postDelayed(wait.idle, wait.condition.idleMillis);
+            } else if (wait.condition.isSatisfied(index, currentPackage())) {
+                finish(wait, true, "Satisfied");
+            }
+        }
+    }
+
+    public void cancelAll() {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            finish(pending.get(i), false, "Cancelled");
+        }
+    }
+
+    private String currentPackage() {
+        if (windowPackage == null && index.getRoot() != null) {
+            windowPackage = index.getRoot().packageName;
+        }
+        return windowPackage;
+    }
+
+    private void finish(Pending wait, boolean success, String outcome) {
+        if (!pending.remove(wait)) return;
+        handler.removeCallbacks(wait.timeout);
+        handler.removeCallbacks(wait.idle);
+        long elapsed = SystemClock.uptimeMillis() - wait.startedAt;
+        wait.sink.onResult("await", success, outcome + " " + wait.condition + " after " + elapsed + "ms");
+    }
+}
@@ -0,0 +1,131 @@
+package com.quantumai.os;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+// Keeps a UiNodeIndex in sync with the active window from accessibility events:
+// window state changes rebuild it, content changes patch only the affected subtree.
+public class UiTreeTracker {
+
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_NODES = 5000;
+
+    private final AccessibilityService service;
+    private final UiNodeIndex index = new UiNodeIndex();
+    private final Rect bounds = new Rect();
+    private int windowId = -1;
+    private int captured;
+
+    public UiTreeTracker(AccessibilityService service) {
+        this.service = service;
+    }
+
+    public UiNodeIndex getIndex() {
+        return index;
+    }
+
+    public void onEvent(UiEvent event) {
+        switch (event.type) {
+            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
+                rebuild();
+                break;
+
+            case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
+            case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+                if (index.getRoot() == null) {
+                    rebuild();
+                } else if (event.windowId == windowId) {
+                    applyDelta(event);
+                }
+                break;
+        }
+    }
+
+    // Full walk of the active window; also the fallback when a delta can't be placed
+    public void rebuild() {
+        AccessibilityNodeInfo root = service.getRootInActiveWindow();
+        if (root == null) {
+            index.clear();
+            windowId = -1;
+            return;
+        }
+        windowId = root.getWindowId();
+        captured = 0;
+        index.rebuild(capture(root, 0));
+    }
+
+    private void applyDelta(UiEvent event) {
+        // No source: the pipeline collapsed a burst into a window-level change
+        AccessibilityNodeInfo source = (AccessibilityNodeInfo) event.source;
+        if (source == null) {
+            rebuild();
+            return;
+        }
+
+        int changes = event.contentChangeTypes;
+        boolean subtree = event.type == AccessibilityEvent.TYPE_VIEW_SCROLLED
+                || (changes & AccessibilityEvent.CONTENT_CHANGE_TYPE_SUBTREE) != 0
+                || changes == 0;
+
+        boolean applied;
+        if (subtree) {
+            captured = 0;
+            applied = index.replaceSubtree(source, capture(source, 0));
+        } else {
+            applied = index.updateNode(source, snapshot(source));
+        }
+        if (!applied) rebuild();
+    }
+
+    private UiNode capture(AccessibilityNodeInfo info, int depth) {
+        UiNode node = snapshot(info);
+        captured++;
+        if (depth >= MAX_DEPTH) return node;
+
+        int count = info.getChildCount();
+        for (int i = 0; i < count && captured < MAX_NODES; i++) {
+            AccessibilityNodeInfo child = info.getChild(i);
+            if (child != null) {
+                node.addChild(capture(child, depth + 1));
+            }
+        }
+        return node;
+    }
+
+    private UiNode snapshot(AccessibilityNodeInfo info) {
+        UiNode node = new UiNode();
+        node.handle = info;
+        node.viewId = info.getViewIdResourceName();
+        // Capped here so huge text (an open document, say) isn't copied around at full length
+        node.text = ScreenSnapshotWriter.truncate(toString(info.getText()));
+        node.description = ScreenSnapshotWriter.truncate(toString(info.getContentDescription()));
+        node.className = toString(info.getClassName());
+        node.packageName = toString(info.getPackageName());
+
+        info.getBoundsInScreen(bounds);
+        node.left = bounds.left;
+        node.top = bounds.top;
+        node.right = bounds.right;
+        node.bottom = bounds.bottom;
+
+        int flags = 0;
+        if (info.isClickable()) flags |= UiNode.FLAG_CLICKABLE;
+        if (info.isLongClickable()) flags |= UiNode.FLAG_LONG_CLICKABLE;
+        if (info.isEditable()) flags |= UiNode.FLAG_EDITABLE;
+        if (info.isScrollable()) flags |= UiNode.FLAG_SCROLLABLE;
+        if (info.isCheckable()) flags |= UiNode.FLAG_CHECKABLE;
+        if (info.isChecked()) flags |= UiNode.FLAG_CHECKED;
+        if (info.isFocusable()) flags |= UiNode.FLAG_FOCUSABLE;
+        if (info.isEnabled()) flags |= UiNode.FLAG_ENABLED;
+        if (info.isVisibleToUser()) flags |= UiNode.FLAG_VISIBLE;
+        if (info.isSelected()) flags |= UiNode.FLAG_SELECTED;
+        node.flags = flags;
+        return node;
+    }
+
+    private static String toString(CharSequence value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,124 @@
+package com.quantumai.os;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+// Microphone capture for the orb service. An urgent-audio thread reads 20 ms
+// frames from AudioRecord straight into the segmenter's direct-buffer ring and
+// runs VAD on each; only speech segments (with pre-roll) are handed to the
+// uploader. The listener hears about speech boundaries and the level of every
+// frame, all on the capture thread.
+public class VoiceCapture {
+
+    private static final String TAG = "QuantumVoice";
+    private static final int PRE_ROLL_MS = 300;
+    private static final int MAX_SEGMENT_MS = 30_000;
+
+    public interface Listener {
+        void onSpeechStart();
+
+        void onSpeechEnd();
+
+        // Level of the frame just captured, 0..1
+        void onLevel(float level, boolean speaking);
+    }
+
+    private final SpeechSegmenter segmenter;
+    private final SpeechUploader uploader;
+    private final Listener listener;
+    private volatile boolean running;
+    private Thread thread;
+
+    public VoiceCapture(SpeechUploader uploader, Listener listener) {
+        this.uploader = uploader;
+        this.listener = listener;
+        segmenter = new SpeechSegmenter(PRE_ROLL_MS, MAX_SEGMENT_MS, uploader);
+    }
+
+    // Caller must hold RECORD_AUDIO
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::captureLoop, "QuantumAI-VoiceCapture");
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        int minBuffer = AudioRecord.getMinBufferSize(VoiceActivityDetector.SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record;
+        try {
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION,
+                    VoiceActivityDetector.SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT,
+                    Math.max(minBuffer, VoiceActivityDetector.FRAME_BYTES * 10));
+        } catch (Exception e) {
+            Log.e(TAG, "Microphone unavailable", e);
+            running = false;
+            return;
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "Microphone unavailable");
+            record.release();
+            running = false;
+            return;
+        }
+
+        try {
+            record.startRecording();
+            while (running) {
+                ByteBuffer slot = segmenter.nextSlot();
+                int read = record.read(slot, VoiceActivityDetector.FRAME_BYTES);
+                if (read < 0) {
+                    Log.e(TAG, "AudioRecord read failed: " + read);
+                    break;
+                }
+                // Blocking reads return whole frames; anything shorter is a stop in progress
+                if (read < VoiceActivityDetector.FRAME_BYTES) continue;
+
+                int event = segmenter.commit();
+                if (event == VoiceActivityDetector.EVENT_SPEECH_START) {
+                    listener.onSpeechStart();
+                } else if (event == VoiceActivityDetector.EVENT_SPEECH_END) {
+                    listener.onSpeechEnd();
+                }
+                VoiceActivityDetector vad = segmenter.getDetector();
+                listener.onLevel(vad.getLevel(), vad.isSpeaking());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Capture stopped", e);
+        } finally {
+            boolean wasSpeaking = segmenter.getDetector().isSpeaking();
+            segmenter.finish();
+            if (wasSpeaking) listener.onSpeechEnd();
+            try {
+                record.stop();
+            } catch (Exception e) {
+                // Never started
+            }
+            record.release();
+            running = false;
+            if (uploader.getDropped() > 0) {
+                Log.w(TAG, "Dropped " + uploader.getDropped() + " speech frames");
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.quantumai.os;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Serves the WebUI's static files from the device instead of over loopback HTTP.
+// The page still lives at http://127.0.0.1:5000 so its API calls stay same-origin,
+// but GETs for files in the local bundle are answered from WebAssetCache, so once
+// checkLocalPage finds index.html on the device the page can be loaded before the
+// backend is up; its API calls fail until it is. API paths and other methods go to
+// the backend as before, as do URLs with a query and paths that aren't static
+// files (client-side routes); static files the bundle doesn't have are fetched
+// once and kept along with the Content-Type the backend sent.
+//
+// The bundle is the APK's assets/webui/ tree (optional), overridden file by file
+// by filesDir/webui/<install>/, which is where fetched and revalidated files are
+// written. <install> is the APK's last update time, so files saved by an older
+// install never shadow the assets of a newer one; older directories are deleted.
+public class WebUiClient extends WebViewClient {
+
+    public static final String ORIGIN = "http://127.0.0.1:5000";
+
+    private static final String BUNDLE_DIR = "webui";
+    private static final String[] NETWORK_PREFIXES = {"/api/", "/orb/", "/voice/", "/socket.io/"};
+    private static final long CACHE_BYTES = 8L * 1024 * 1024;
+    private static final long REVALIDATE_AFTER_MS = 60_000;
+
+    private final WebAssetCache cache;
+    private final Executor revalidator;
+    private Runnable onPageFinished;
+
+    public WebUiClient(Context context) {
+        revalidator = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "QuantumAI-AssetRevalidate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        File bundles = new File(context.getFilesDir(), BUNDLE_DIR);
+        String install = installVersion(context);
+        cache = new WebAssetCache(new BundleStore(context, new File(bundles, install)), ORIGIN, revalidator,
+                CACHE_BYTES, REVALIDATE_AFTER_MS);
+        revalidator.execute(() -> deleteOtherInstalls(bundles, install));
+    }
+
+    private static String installVersion(Context context) {
+        try {
+            return Long.toString(context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (Exception e) {
+            return "0";
+        }
+    }
+
+    private static void deleteOtherInstalls(File bundles, String install) {
+        File[] dirs = bundles.listFiles();
+        if (dirs == null) return;
+        for (File dir : dirs) {
+            if (!dir.getName().equals(install)) deleteTree(dir);
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteTree(child);
+        }
+        file.delete();
+    }
+
+    // Runs onCached on a background thread if the start page is on the device,
+    // i.e. loading it doesn't need the backend; otherwise does nothing
+    public void checkLocalPage(Runnable onCached) {
+        revalidator.execute(() -> {
+            if (cache.hasLocal("/index.html")) onCached.run();
+        });
+    }
+
+    public WebAssetCache getCache() {
+        return cache;
+    }
+
+    // Runs on the main thread after each top-level page load completes
+    public void setOnPageFinished(Runnable onPageFinished) {
+        this.onPageFinished = onPageFinished;
+    }
+
+    @Override
+    public void onPageFinished(WebView view, String url) {
+        if (onPageFinished != null) onPageFinished.run();
+    }
+
+    // Only the WebUI origin may be shown: links elsewhere would otherwise load
+    // inside this WebView, which is trusted with the native bridge
+    @Override
+    public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+        if (!request.isForMainFrame()) return false;
+        return !isWebUiOrigin(request.getUrl());
+    }
+
+    static boolean isWebUiOrigin(Uri url) {
+        return "http".equals(url.getScheme()) && "127.0.0.1".equals(url.getHost()) && url.getPort() == 5000;
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        if (!"GET".equals(request.getMethod())) return null;
+        Uri url = request.getUrl();
+        if (!isWebUiOrigin(url)) return null;
+
+        // A query means the response can depend on more than the path
+        if (url.getQuery() != null) return null;
+
+        String path = url.getPath();
+        if (path == null || path.isEmpty() || path.endsWith("/")) path = (path == null ? "/" : path) + "index.html";
+        for (String prefix : NETWORK_PREFIXES) {
+            if (path.startsWith(prefix)) return null;
+        }
+
+        WebAssetCache.Asset asset = cache.get(path);
+        if (asset == null) return null;
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-cache");
+        if (asset.etag != null) headers.put("ETag", asset.etag);
+        String encoding = asset.encoding;
+        if (encoding == null && (asset.mimeType.startsWith("text/") || asset.mimeType.endsWith("json"))) {
+            encoding = "UTF-8";
+        }
+        return new WebResourceResponse(asset.mimeType, encoding, 200, "OK", headers,
+                new ByteArrayInputStream(asset.data));
+    }
+
+    private static class BundleStore implements WebAssetCache.Store {
+        private final AssetManager assets;
+        private final File root;
+
+        BundleStore(Context context, File root) {
+            assets = context.getAssets();
+            this.root = root;
+        }
+
+        @Override
+        public WebAssetCache.Asset load(String path) throws IOException {
+            File file = new File(root, path);
+            if (file.isFile()) {
+                return new WebAssetCache.Asset(path, WebAssetCache.readAll(new FileInputStream(file)),
+                        readSidecar(file, ".etag"), readSidecar(file, ".type"));
+            }
+            try {
+                InputStream in = assets.open(BUNDLE_DIR + path);
+                return new WebAssetCache.Asset(path, WebAssetCache.readAll(in), null, null);
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void save(String path, byte[] data, String etag, String contentType) throws IOException {
+            File file = new File(root, path);
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent);
+            }
+            // Write aside and rename so a reader never sees half a file
+            File temp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(data);
+            }
+            if (!temp.renameTo(file)) throw new IOException("Cannot replace " + file);
+
+            writeSidecar(file, ".etag", etag);
+            writeSidecar(file, ".type", contentType);
+        }
+
+        // Header values kept next to the file; a null value removes the sidecar
+        private static void writeSidecar(File file, String suffix, String value) throws IOException {
+            File sidecar = new File(file.getPath() + suffix);
+            if (value != null) {
+                try (FileOutputStream out = new FileOutputStream(sidecar)) {
+                    out.write(value.getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                sidecar.delete();
+            }
+        }
+
+        private static String readSidecar(File file, String suffix) {
+            File sidecar = new File(file.getPath() + suffix);
+            if (!sidecar.isFile()) return null;
+            try {
+                return new String(WebAssetCache.readAll(new FileInputStream(sidecar)), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.quantumai.os;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Command path as the socket channel sees it: request frame in, then through the
+// service's CommandRouter (timing sink, options and params parsing, gesture
+// scheduler, result message), response frame out. The gesture is completed as
+// soon as it has been dispatched.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandPathBenchmark {
+
+    private static final String TAP = "540,1200";
+    private static final String SWIPE = "540,1800,540,400,250";
+    private static final String OPTIONS_TAP = "[id=t1;priority=high]540,1200";
+
+    private final int[] ints = new int[5];
+    private final CommandMetrics metrics = new CommandMetrics();
+    private final GestureScheduler scheduler = new GestureScheduler(Runnable::run);
+    private CommandRouter.GestureCallback pending;
+    private final CommandRouter router = new CommandRouter(new CommandRouter.Host() {
+        @Override
+        public boolean dispatchTap(int x, int y, CommandRouter.GestureCallback callback) {
+            pending = callback;
+            return true;
+        }
+
+        @Override
+        public boolean dispatchSwipe(int x1, int y1, int x2, int y2, int duration,
+                                     CommandRouter.GestureCallback callback) {
+            pending = callback;
+            return true;
+        }
+
+        @Override
+        public int globalActionFor(String name) {
+            return -1;
+        }
+
+        @Override
+        public boolean performGlobalAction(int action) {
+            return false;
+        }
+
+        @Override
+        public void executeQueued(String action, String params, CommandResultSink sink) {
+            sink.onResult(action, false, "Unknown action");
+        }
+
+        @Override
+        public void executeOther(String action, String params, CommandResultSink sink) {
+            sink.onResult(action, false, "Unknown action");
+        }
+    }, scheduler, metrics, Runnable::run);
+    private final ByteArrayOutputStream responseBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream responseOut = new DataOutputStream(responseBytes);
+    private byte[] requestFrame;
+    private int nextId;
+
+    private final CommandResultSink responseSink = (action, success, message) -> {
+        try {
+            responseBytes.reset();
+            CommandFrames.writeResponse(responseOut, nextId, success, action, message, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CommandFrames.writeRequest(new DataOutputStream(bytes), 1, "tap", "[priority=high]" + TAP);
+        requestFrame = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public CommandFrames.Request decodeRequest() throws IOException {
+        return CommandFrames.readRequest(new DataInputStream(new ByteArrayInputStream(requestFrame)));
+    }
+
+    @Benchmark
+    public int parseTap() {
+        CommandParams.parsePoint(TAP, ints);
+        return ints[0] + ints[1];
+    }
+
+    // What executeTap did before CommandParams, for comparison
+    @Benchmark
+    public int parseTapWithSplit() {
+        String[] coords = TAP.split(",");
+        return Integer.parseInt(coords[0].trim()) + Integer.parseInt(coords[1].trim());
+    }
+
+    @Benchmark
+    public int parseSwipe() {
+        CommandParams.parseSwipe(SWIPE, ints);
+        return ints[0] + ints[4];
+    }
+
+    @Benchmark
+    public GestureScheduler.Options parseOptions() {
+        return GestureScheduler.Options.parse(OPTIONS_TAP);
+    }
+
+    @Benchmark
+    public int dispatchRoundTrip() throws IOException {
+        CommandFrames.Request request = CommandFrames.readRequest(
+                new DataInputStream(new ByteArrayInputStream(requestFrame)));
+        nextId = request.id;
+        router.dispatch(request.action, request.params, responseSink);
+        CommandRouter.GestureCallback callback = pending;
+        pending = null;
+        callback.onCompleted();
+        return responseBytes.size();
+    }
+
+    @Benchmark
+    public String metricsReport() {
+        return metrics.report();
+    }
+}
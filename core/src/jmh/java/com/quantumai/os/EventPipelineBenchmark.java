@@ -0,0 +1,81 @@
+package com.quantumai.os;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Event ingestion as onAccessibilityEvent drives it. Time advances one frame
+// every 16 events, with a flush whenever the pipeline asked for one.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventPipelineBenchmark {
+
+    private static final int TYPE_VIEW_CLICKED = 1;
+    private static final int TYPE_VIEW_LONG_CLICKED = 2;
+
+    // Distinct source nodes the content changes are spread over
+    @Param({"1", "16"})
+    public int sources;
+
+    private EventPipeline pipeline;
+    private Object[] sourceNodes;
+    private long now;
+    private long flushAt = Long.MAX_VALUE;
+    private int counter;
+    private long delivered;
+
+    @Setup
+    public void setUp() {
+        pipeline = new EventPipeline(event -> delivered++, delay -> flushAt = Math.min(flushAt, now + delay));
+        pipeline.configure("mask=" + (EventPipeline.TYPE_WINDOW_CONTENT_CHANGED | TYPE_VIEW_CLICKED));
+        sourceNodes = new Object[sources];
+        for (int i = 0; i < sources; i++) sourceNodes[i] = new Object();
+    }
+
+    // Debounced per source and collapsed per window
+    @Benchmark
+    public long contentChanged() {
+        return ingest(EventPipeline.TYPE_WINDOW_CONTENT_CHANGED);
+    }
+
+    // Delivered straight through
+    @Benchmark
+    public long clicked() {
+        return ingest(TYPE_VIEW_CLICKED);
+    }
+
+    // Rejected by the type mask before anything is allocated
+    @Benchmark
+    public boolean filtered() {
+        return pipeline.accepts(TYPE_VIEW_LONG_CLICKED);
+    }
+
+    private long ingest(int type) {
+        if (!pipeline.accepts(type)) return delivered;
+        UiEvent event = pipeline.obtain();
+        event.type = type;
+        event.time = now;
+        event.packageName = "com.example.app";
+        event.className = "android.widget.TextView";
+        event.windowId = 1;
+        event.source = sourceNodes[counter % sources];
+        pipeline.ingest(event, now);
+
+        if (++counter % 16 == 0) {
+            now += 16;
+            if (now >= flushAt) {
+                flushAt = Long.MAX_VALUE;
+                pipeline.flush(now);
+            }
+        }
+        return delivered;
+    }
+}
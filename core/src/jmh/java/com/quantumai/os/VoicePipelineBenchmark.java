@@ -0,0 +1,94 @@
+package com.quantumai.os;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Voice capture path per 20 ms frame: the VAD alone, and the segmenter as the
+// capture thread drives it (copy into nextSlot, commit, speech frames to the sink).
+// The PCM is generated: low background noise, with a voiced tone over the first
+// speechPercent frames of every 100. At 30 speech starts and ends once per cycle;
+// at 90 the gaps are shorter than the hangover, so it reads as one long talk. Some
+// silence is always kept: with none, the noise floor would adapt to the tone.
+// Both paths are meant to allocate nothing; see gc.alloc.rate.norm.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VoicePipelineBenchmark {
+
+    private static final int CYCLE_FRAMES = 100;
+
+    @Param({"0", "30", "90"})
+    public int speechPercent;
+
+    private byte[] pcm;
+    private ByteBuffer direct;
+    private VoiceActivityDetector detector;
+    private SpeechSegmenter segmenter;
+    private int frame;
+    private long speechBytes;
+
+    @Setup
+    public void setUp() {
+        pcm = new byte[CYCLE_FRAMES * VoiceActivityDetector.FRAME_BYTES];
+        ByteBuffer samples = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(3);
+        int speechSamples = speechPercent * VoiceActivityDetector.FRAME_SAMPLES;
+        for (int t = 0; t < CYCLE_FRAMES * VoiceActivityDetector.FRAME_SAMPLES; t++) {
+            double value = random.nextGaussian() * 30;
+            if (t < speechSamples) {
+                // 150 Hz fundamental with two harmonics, roughly a voiced vowel
+                double phase = 2 * Math.PI * 150 * t / VoiceActivityDetector.SAMPLE_RATE;
+                value += 6000 * Math.sin(phase) + 2500 * Math.sin(2 * phase) + 1200 * Math.sin(3 * phase);
+            }
+            samples.putShort(t * 2, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value)));
+        }
+        direct = ByteBuffer.allocateDirect(pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(pcm).clear();
+
+        detector = new VoiceActivityDetector();
+        segmenter = new SpeechSegmenter(300, 30_000, new SpeechSegmenter.Sink() {
+            @Override
+            public void onSpeechStart() {
+            }
+
+            @Override
+            public void onSpeechFrame(ByteBuffer frame) {
+                speechBytes += frame.remaining();
+            }
+
+            @Override
+            public void onSpeechEnd() {
+            }
+        });
+    }
+
+    @Benchmark
+    public int detect() {
+        int offset = next() * VoiceActivityDetector.FRAME_BYTES;
+        return detector.process(direct, offset);
+    }
+
+    @Benchmark
+    public long segment() {
+        int offset = next() * VoiceActivityDetector.FRAME_BYTES;
+        segmenter.nextSlot().put(pcm, offset, VoiceActivityDetector.FRAME_BYTES);
+        return segmenter.commit() + speechBytes;
+    }
+
+    private int next() {
+        int current = frame;
+        frame = current + 1 == CYCLE_FRAMES ? 0 : current + 1;
+        return current;
+    }
+}
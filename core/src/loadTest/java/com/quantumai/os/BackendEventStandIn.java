@@ -0,0 +1,140 @@
+package com.quantumai.os;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Stand-in for the backend side of BackendEventStream: a minimal SSE server that
+// accepts any GET and pushes whatever it is told to, plus periodic heartbeats.
+// Also runnable on its own, reading "state <name>" / "command <name> [args]" /
+// "drop" lines from stdin, e.g. behind `adb reverse tcp:5000 tcp:5000`:
+//
+//   java com.quantumai.os.BackendEventStandIn [port] [heartbeatMs]
+public class BackendEventStandIn implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final List<OutputStream> clients = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+    private int nextId = 1;
+
+    public BackendEventStandIn(int port, long heartbeatMs) throws IOException {
+        serverSocket = new ServerSocket(port, 8, InetAddress.getByName("127.0.0.1"));
+        Thread acceptThread = new Thread(this::acceptLoop, "StandIn-Accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        heartbeat.scheduleAtFixedRate(() -> send(":hb\n\n"), heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public void pushState(String state) {
+        send(frame("state", state));
+    }
+
+    public void pushCommand(String command) {
+        send(frame("command", command));
+    }
+
+    // Cuts every subscriber off, to exercise reconnects
+    public void dropClients() {
+        for (OutputStream out : clients) {
+            closeQuietly(out);
+        }
+        clients.clear();
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        dropClients();
+        closeQuietly(serverSocket);
+    }
+
+    private synchronized String frame(String event, String data) {
+        return "id: " + nextId++ + "\nevent: " + event + "\ndata: " + data + "\n\n";
+    }
+
+    private void send(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (OutputStream out : clients) {
+            try {
+                synchronized (out) {
+                    out.write(bytes);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                clients.remove(out);
+                closeQuietly(out);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                // Skip the request line and headers
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    // Nothing to route on
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\n"
+                        + "Cache-Control: no-cache\r\nConnection: keep-alive\r\n\r\nretry: 500\n\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                clients.add(out);
+            } catch (IOException e) {
+                // Server closed or client gave up during the handshake
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long heartbeatMs = args.length > 1 ? Long.parseLong(args[1]) : 15_000;
+
+        try (BackendEventStandIn server = new BackendEventStandIn(port, heartbeatMs)) {
+            System.out.println("SSE stand-in on 127.0.0.1:" + server.getLocalPort());
+            BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = stdin.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("state ")) {
+                    server.pushState(line.substring(6).trim());
+                } else if (line.startsWith("command ")) {
+                    server.pushCommand(line.substring(8).trim());
+                } else if (line.equals("drop")) {
+                    server.dropClients();
+                }
+                System.out.println(server.getClientCount() + " subscriber(s)");
+            }
+        }
+    }
+}
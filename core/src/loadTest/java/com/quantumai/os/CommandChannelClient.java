@@ -0,0 +1,105 @@
+package com.quantumai.os;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Stand-in for the backend side of CommandChannel. Also runnable on its own to
+// measure pipelined round-trip latency, e.g. through `adb forward tcp:5001 tcp:5001`:
+//
+//   java com.quantumai.os.CommandChannelClient token [host] [port] [count] [inFlight]
+//
+// The token is the service's per-install channel token (see CommandChannel).
+public class CommandChannelClient implements Closeable {
+
+    public interface Listener {
+        void onResponse(CommandFrames.Response response);
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public CommandChannelClient(String host, int port, String token, Listener listener) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 8192));
+        // Handshake; it gets no response, and ids for real commands start at 1
+        CommandFrames.writeRequest(out, 0, CommandChannel.AUTH_ACTION, token);
+        out.flush();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8192));
+
+        Thread reader = new Thread(() -> {
+            try {
+                CommandFrames.Response response;
+                while ((response = CommandFrames.readResponse(in)) != null) {
+                    listener.onResponse(response);
+                }
+            } catch (IOException e) {
+                // Socket closed
+            }
+        }, "CommandChannelClient-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public int send(String action, String params) throws IOException {
+        int id = nextId.getAndIncrement();
+        synchronized (out) {
+            CommandFrames.writeRequest(out, id, action, params);
+            out.flush();
+        }
+        return id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("usage: CommandChannelClient token [host] [port] [count] [inFlight]");
+            return;
+        }
+        String token = args[0];
+        String host = args.length > 1 ? args[1] : "127.0.0.1";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : CommandChannel.DEFAULT_PORT;
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+        int inFlight = args.length > 4 ? Integer.parseInt(args[4]) : 32;
+
+        long[] sentAt = new long[count + 1];
+        long[] latencies = new long[count];
+        AtomicInteger received = new AtomicInteger();
+        Semaphore window = new Semaphore(inFlight);
+
+        try (CommandChannelClient client = new CommandChannelClient(host, port, token, response -> {
+            if (response.id > 0 && response.id <= count) {
+                latencies[received.getAndIncrement()] = System.nanoTime() - sentAt[response.id];
+            }
+            window.release();
+        })) {
+            long start = System.nanoTime();
+            for (int i = 1; i <= count; i++) {
+                window.acquire();
+                sentAt[i] = System.nanoTime();
+                client.send("ping", null);
+            }
+            window.acquire(inFlight);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies, 0, received.get());
+            int n = received.get();
+            System.out.printf("%d pings, %d in flight: %.0f cmd/s, p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                    n, inFlight, n * 1e9 / elapsed,
+                    latencies[n / 2] / 1e3, latencies[Math.min(n - 1, n * 99 / 100)] / 1e3, latencies[n - 1] / 1e3);
+        }
+    }
+}
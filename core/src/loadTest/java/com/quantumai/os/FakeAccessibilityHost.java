@@ -0,0 +1,151 @@
+package com.quantumai.os;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Plain-JVM stand-in for what the accessibility service gets from the platform:
+// a main thread, and a gesture injector with the real one's rules. As a
+// CommandRouter.Host it answers taps, swipes and global actions; anything else
+// is an unknown action. A gesture
+// completes after a configurable latency, is cancelled at a configurable rate
+// (as when the user touches the screen), and a new dispatch cancels the gesture
+// still in flight. Callbacks arrive on the main thread, like with a null Handler.
+// Every task the thread runs is reported to a ThreadLoad, as LooperMonitor does
+// for a real Looper.
+public class FakeAccessibilityHost implements CommandRouter.Host {
+
+    // Values of AccessibilityService.GLOBAL_ACTION_*
+    private static final String[] GLOBAL_ACTIONS = {"back", "home", "recents", "notifications", "quick_settings"};
+
+    private final ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FakeHost-main");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double cancelRate;
+    private final ThreadLoad load;
+    private final Random random = new Random(42);
+
+    // Main thread only
+    private CommandRouter.GestureCallback inFlight;
+    private long dispatched;
+    private long completed;
+    private long cancelled;
+    private long preempted;
+    private long globalActions;
+
+    public FakeAccessibilityHost(double latencyMs, double jitterMs, double cancelRate, ThreadLoad load) {
+        this.latencyNanos = (long) (latencyMs * 1_000_000);
+        this.jitterNanos = (long) (jitterMs * 1_000_000);
+        this.cancelRate = cancelRate;
+        this.load = load;
+    }
+
+    public void post(Runnable task) {
+        mainThread.execute(timed(task));
+    }
+
+    public ScheduledFuture<?> postDelayed(Runnable task, long delayMillis) {
+        return mainThread.schedule(timed(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Runnable timed(Runnable task) {
+        return () -> {
+            load.taskStarted();
+            try {
+                task.run();
+            } finally {
+                load.taskFinished();
+            }
+        };
+    }
+
+    // Runs task on the main thread and waits for it, e.g. to read main-thread state
+    public <T> T call(Callable<T> task) throws InterruptedException {
+        Future<T> future = mainThread.submit(task);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public boolean dispatchTap(int x, int y, CommandRouter.GestureCallback callback) {
+        return dispatchGesture(callback);
+    }
+
+    @Override
+    public boolean dispatchSwipe(int x1, int y1, int x2, int y2, int duration, CommandRouter.GestureCallback callback) {
+        return dispatchGesture(callback);
+    }
+
+    // Main thread only, like AccessibilityService.dispatchGesture
+    public boolean dispatchGesture(CommandRouter.GestureCallback callback) {
+        dispatched++;
+        if (inFlight != null) {
+            // The platform cancels the running gesture in favour of the new one
+            CommandRouter.GestureCallback previous = inFlight;
+            preempted++;
+            post(previous::onCancelled);
+        }
+        inFlight = callback;
+        long delay = latencyNanos + (jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0);
+        boolean cancel = random.nextDouble() < cancelRate;
+        mainThread.schedule(timed(() -> {
+            if (inFlight != callback) return;
+            inFlight = null;
+            if (cancel) {
+                cancelled++;
+                callback.onCancelled();
+            } else {
+                completed++;
+                callback.onCompleted();
+            }
+        }), delay, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    @Override
+    public int globalActionFor(String name) {
+        for (int i = 0; i < GLOBAL_ACTIONS.length; i++) {
+            if (GLOBAL_ACTIONS[i].equals(name)) return i + 1;
+        }
+        return -1;
+    }
+
+    // Main thread only
+    @Override
+    public boolean performGlobalAction(int action) {
+        globalActions++;
+        return true;
+    }
+
+    @Override
+    public void executeQueued(String action, String params, CommandResultSink sink) {
+        sink.onResult(action, false, "Unknown action");
+    }
+
+    @Override
+    public void executeOther(String action, String params, CommandResultSink sink) {
+        sink.onResult(action, false, "Unknown action");
+    }
+
+    // Main thread only
+    public String stats() {
+        return "dispatched=" + dispatched + " completed=" + completed + " cancelled=" + cancelled
+                + " preempted=" + preempted + " globalActions=" + globalActions;
+    }
+
+    public void shutdown() {
+        mainThread.shutdownNow();
+    }
+}
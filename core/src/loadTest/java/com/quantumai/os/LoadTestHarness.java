@@ -0,0 +1,376 @@
+package com.quantumai.os;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Headless load test of the accessibility command, result and event paths. The
+// real CommandChannel, CommandRouter, GestureScheduler, CommandMetrics and
+// EventPipeline run with a FakeAccessibilityHost in place of the phone. They are
+// wired the way QuantumAccessibilityService wires them: commands reach the host
+// thread through a WorkQueue and events through a BoundedHandoff, and that
+// thread's ThreadLoad is printed with the results.
+// Socket clients send an open-loop command mix at a target rate while synthetic
+// accessibility events arrive in frame-sized bursts. Prints per-second figures,
+// then totals: sustained throughput, round-trip and event-delivery percentiles,
+// and heap growth.
+//
+//   ./gradlew :core:loadTest --args="rate=5000 seconds=30 gestureMs=0.2"
+//
+// Options (key=value): seconds, rate (commands/s), clients, inFlight (per client),
+// gestureMs, jitterMs, cancel (fraction of gestures cancelled), events (events/s),
+// sources (distinct nodes changing), taps and swipes (percent of the mix; the
+// rest are "back").
+public class LoadTestHarness {
+
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 2400;
+    private static final long FRAME_MS = 16;
+    private static final int TYPE_VIEW_CLICKED = 1;
+    private static final String CHANNEL_TOKEN = "load-test";
+    // Same as the service's worker thread
+    private static final long FRAME_NANOS = 16_000_000;
+    private static final long WORKER_DRAIN_NANOS = 8_000_000;
+
+    private int seconds = 10;
+    private int rate = 2000;
+    private int clients = 4;
+    private int inFlight = 64;
+    private double gestureMs = 0.5;
+    private double jitterMs = 0.5;
+    private double cancelRate = 0.01;
+    private int eventRate = 1000;
+    private int sources = 16;
+    private int tapPercent = 70;
+    private int swipePercent = 20;
+
+    private FakeAccessibilityHost host;
+    private final ThreadLoad workerLoad = new ThreadLoad("worker", FRAME_NANOS);
+    private WorkQueue workQueue;
+    private GestureScheduler scheduler;
+    private EventPipeline pipeline;
+    private BoundedHandoff<SyntheticEvent> eventHandoff;
+    private final CommandMetrics metrics = new CommandMetrics();
+    private final long startNanos = System.nanoTime();
+
+    // Main thread only
+    private final Runnable pipelineFlush = () -> pipeline.flush(nowMillis());
+    private ScheduledFuture<?> pendingFlush;
+    private Object[] sourceNodes;
+
+    private final LatencyHistogram roundTrip = new LatencyHistogram();
+    private final LatencyHistogram intervalRoundTrip = new LatencyHistogram();
+    private final LatencyHistogram eventDelay = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    // Commands that came due before the deadline but weren't sent by then
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong firstSendNanos = new AtomicLong();
+    private volatile long lastResultNanos;
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong eventsGenerated = new AtomicLong();
+    private final AtomicLong eventsDelivered = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        LoadTestHarness harness = new LoadTestHarness();
+        for (String arg : args) harness.configure(arg);
+        harness.run();
+    }
+
+    private void configure(String option) {
+        int eq = option.indexOf('=');
+        if (eq < 0) throw new IllegalArgumentException("expected key=value, got '" + option + "'");
+        String key = option.substring(0, eq).trim();
+        String value = option.substring(eq + 1).trim();
+        switch (key) {
+            case "seconds":
+                seconds = Integer.parseInt(value);
+                break;
+            case "rate":
+                rate = Integer.parseInt(value);
+                break;
+            case "clients":
+                clients = Integer.parseInt(value);
+                break;
+            case "inFlight":
+                inFlight = Math.min(Integer.parseInt(value), 4096);
+                break;
+            case "gestureMs":
+                gestureMs = Double.parseDouble(value);
+                break;
+            case "jitterMs":
+                jitterMs = Double.parseDouble(value);
+                break;
+            case "cancel":
+                cancelRate = Double.parseDouble(value);
+                break;
+            case "events":
+                eventRate = Integer.parseInt(value);
+                break;
+            case "sources":
+                sources = Math.max(1, Integer.parseInt(value));
+                break;
+            case "taps":
+                tapPercent = Integer.parseInt(value);
+                break;
+            case "swipes":
+                swipePercent = Integer.parseInt(value);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option '" + key + "'");
+        }
+    }
+
+    private void run() throws Exception {
+        host = new FakeAccessibilityHost(gestureMs, jitterMs, cancelRate, workerLoad);
+        workQueue = new WorkQueue(host::post, workerLoad, WORKER_DRAIN_NANOS);
+        scheduler = new GestureScheduler(host::post);
+        pipeline = new EventPipeline(this::onUiEvent, delay -> {
+            if (pendingFlush != null) pendingFlush.cancel(false);
+            pendingFlush = host.postDelayed(pipelineFlush, delay);
+        });
+        // Same bound and policy as the service's binder-to-worker hand-off
+        eventHandoff = new BoundedHandoff<>("events", host::post, new BoundedHandoff.Receiver<SyntheticEvent>() {
+            @Override
+            public void onItem(SyntheticEvent synthetic) {
+                ingest(synthetic);
+            }
+
+            @Override
+            public void onDropped(SyntheticEvent synthetic) {
+                // Nothing to release; counted by the hand-off
+            }
+        }, WORKER_DRAIN_NANOS, pipeline.getQueueCapacity(), pipeline.getOverflowPolicy());
+        sourceNodes = new Object[sources];
+        for (int i = 0; i < sources; i++) sourceNodes[i] = new Object();
+
+        CommandRouter router = new CommandRouter(host, scheduler, metrics, workQueue);
+        CommandChannel channel = new CommandChannel(0, CHANNEL_TOKEN, router);
+        channel.start();
+
+        long heapBefore = usedHeapAfterGc();
+        workerLoad.stats(); // starts its utilization window here
+        long heapPeak = heapBefore;
+        System.out.printf("%d cmd/s over %d client(s), %d in flight each, gesture %.2f+%.2f ms, cancel %.1f%%, "
+                        + "%d events/s over %d sources, heap %.1f MB%n",
+                rate, clients, inFlight, gestureMs, jitterMs, cancelRate * 100, eventRate, sources, heapBefore / 1e6);
+
+        ScheduledExecutorService uiThread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "FakeHost-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        uiThread.scheduleAtFixedRate(new EventBurst(), 0, FRAME_MS, TimeUnit.MILLISECONDS);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> senders = new ArrayList<>();
+        List<CommandChannelClient> connections = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Sender sender = new Sender(i, channel.getLocalPort(), deadline);
+            connections.add(sender.client);
+            Thread thread = new Thread(sender, "LoadTest-client-" + i);
+            senders.add(thread);
+            thread.start();
+        }
+
+        long lastSent = 0, lastDone = 0, lastGenerated = 0, lastDelivered = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            long heap = usedHeap();
+            heapPeak = Math.max(heapPeak, heap);
+            long done = succeeded.get() + failed.get();
+            System.out.printf("%3ds  sent %6d/s  done %6d/s  rtt %s  events %6d/s -> %6d/s  heap %.1f MB%n",
+                    second, sent.get() - lastSent, done - lastDone, intervalRoundTrip.summary(),
+                    eventsGenerated.get() - lastGenerated, eventsDelivered.get() - lastDelivered, heap / 1e6);
+            intervalRoundTrip.reset();
+            lastSent = sent.get();
+            lastDone = done;
+            lastGenerated = eventsGenerated.get();
+            lastDelivered = eventsDelivered.get();
+        }
+
+        for (Thread thread : senders) thread.join();
+        uiThread.shutdownNow();
+        // Let queued commands finish so their results are counted
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (succeeded.get() + failed.get() < sent.get() && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        long heapAfter = usedHeapAfterGc();
+
+        long done = succeeded.get() + failed.get();
+        // Measured from the first send to the last result, not the nominal duration,
+        // so a backlog drained after the deadline doesn't inflate the rate
+        double elapsed = Math.max(1, lastResultNanos - firstSendNanos.get()) / 1e9;
+        System.out.println();
+        System.out.printf("commands  %d sent, %d missed, %d ok, %d failed, %d unanswered; "
+                        + "sustained %.0f results/s over %.2f s (target %d/s)%n",
+                sent.get(), missed.get(), succeeded.get(), failed.get(), sent.get() - done,
+                done / elapsed, elapsed, rate);
+        System.out.println("round trip p50/p99/p999 " + roundTrip.summary() + ", max " + roundTrip.getMax() + "us");
+        System.out.printf("events    %d generated, %d delivered; delivery p50/p99/p999 %s%n",
+                eventsGenerated.get(), eventsDelivered.get(), eventDelay.summary());
+        System.out.printf("heap      %.1f MB before, %.1f MB peak, %.1f MB after GC (%+.1f MB)%n",
+                heapBefore / 1e6, heapPeak / 1e6, heapAfter / 1e6, (heapAfter - heapBefore) / 1e6);
+        System.out.println("scheduler " + host.call(scheduler::stats));
+        System.out.println("host      " + host.call(host::stats));
+        System.out.println("thread    " + workerLoad.stats());
+        System.out.println("handoff   " + eventHandoff.stats());
+        System.out.println("pipeline  " + host.call(pipeline::stats));
+        System.out.println("stages (service side, p50/p99/p999):");
+        System.out.println(host.call(metrics::report));
+
+        for (CommandChannelClient client : connections) client.close();
+        channel.close();
+        host.shutdown();
+    }
+
+    // Main thread: what dispatchUiEvent sees
+    private void onUiEvent(UiEvent event) {
+        eventsDelivered.incrementAndGet();
+        eventDelay.record(System.nanoTime() - event.time);
+    }
+
+    // One frame's worth of events, each handed over separately the way binder delivers them
+    private class EventBurst implements Runnable {
+        private final Random random = new Random(7);
+        private double owed;
+
+        @Override
+        public void run() {
+            owed += eventRate * FRAME_MS / 1000.0;
+            int count = (int) owed;
+            owed -= count;
+            for (int i = 0; i < count; i++) {
+                int roll = random.nextInt(10);
+                int type = roll < 8 ? EventPipeline.TYPE_WINDOW_CONTENT_CHANGED
+                        : roll < 9 ? EventPipeline.TYPE_VIEW_SCROLLED : TYPE_VIEW_CLICKED;
+                Object source = sourceNodes[random.nextInt(sourceNodes.length)];
+                long generatedAt = System.nanoTime();
+                eventsGenerated.incrementAndGet();
+                eventHandoff.offer(new SyntheticEvent(type, source, generatedAt));
+            }
+        }
+    }
+
+    // Main thread: what the service does with each copied AccessibilityEvent
+    private void ingest(SyntheticEvent synthetic) {
+        if (!pipeline.accepts(synthetic.type)) return;
+        UiEvent event = pipeline.obtain();
+        event.type = synthetic.type;
+        event.time = synthetic.generatedAt;
+        event.packageName = "com.example.app";
+        event.className = "android.widget.TextView";
+        event.windowId = 1;
+        event.source = synthetic.source;
+        pipeline.ingest(event, nowMillis());
+    }
+
+    // Stands in for the AccessibilityEvent copy the binder thread hands over
+    private static final class SyntheticEvent {
+        final int type;
+        final Object source;
+        final long generatedAt;
+
+        SyntheticEvent(int type, Object source, long generatedAt) {
+            this.type = type;
+            this.source = source;
+            this.generatedAt = generatedAt;
+        }
+    }
+
+    // Open-loop sender. Latency is measured from when each command was due, not
+    // when the in-flight window let it out, so a backed-up service shows up in
+    // the percentiles instead of just lowering the send rate.
+    private class Sender implements Runnable {
+        private static final int RING = 4096;
+
+        final CommandChannelClient client;
+        private final long[] dueAt = new long[RING];
+        private final Semaphore window = new Semaphore(inFlight);
+        private final Random random;
+        private final long deadline;
+
+        Sender(int index, int port, long deadline) throws IOException {
+            this.random = new Random(index);
+            this.deadline = deadline;
+            client = new CommandChannelClient("127.0.0.1", port, CHANNEL_TOKEN, response -> {
+                long latency = System.nanoTime() - dueAt[response.id & (RING - 1)];
+                roundTrip.record(latency);
+                intervalRoundTrip.record(latency);
+                (response.success ? succeeded : failed).incrementAndGet();
+                lastResultNanos = System.nanoTime();
+                window.release();
+            });
+        }
+
+        @Override
+        public void run() {
+            long interval = TimeUnit.SECONDS.toNanos(1) * clients / Math.max(1, rate);
+            long next = System.nanoTime();
+            int nextId = 1;
+            try {
+                // Stops at the wall-clock deadline; a sender that has fallen behind its
+                // schedule doesn't keep sending the overdue commands afterwards
+                while (next < deadline) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !window.tryAcquire(remaining, TimeUnit.NANOSECONDS)) break;
+
+                    int roll = random.nextInt(100);
+                    String action;
+                    String params;
+                    if (roll < tapPercent) {
+                        action = "tap";
+                        params = random.nextInt(SCREEN_WIDTH) + "," + random.nextInt(SCREEN_HEIGHT);
+                    } else if (roll < tapPercent + swipePercent) {
+                        action = "swipe";
+                        params = random.nextInt(SCREEN_WIDTH) + "," + random.nextInt(SCREEN_HEIGHT) + ","
+                                + random.nextInt(SCREEN_WIDTH) + "," + random.nextInt(SCREEN_HEIGHT) + ",300";
+                    } else {
+                        action = "back";
+                        params = null;
+                    }
+                    // The client numbers requests 1, 2, ... and only this thread sends, so
+                    // the slot can be filled before the response can possibly arrive
+                    dueAt[nextId & (RING - 1)] = next;
+                    int id = client.send(action, params);
+                    if (id != nextId) throw new IllegalStateException("unexpected request id " + id);
+                    nextId++;
+                    firstSendNanos.compareAndSet(0, System.nanoTime());
+                    sent.incrementAndGet();
+                    next += interval;
+                }
+            } catch (IOException | InterruptedException e) {
+                System.out.println("Sender stopped: " + e.getMessage());
+            }
+            if (next < deadline) missed.addAndGet((deadline - next + interval - 1) / interval);
+        }
+    }
+
+    private long nowMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return usedHeap();
+    }
+}
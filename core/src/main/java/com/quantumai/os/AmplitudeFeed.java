@@ -0,0 +1,119 @@
+package com.quantumai.os;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Loopback stream of audio levels for the orb. The client (the backend's TTS or
+// microphone pipeline) connects and writes big-endian float32 levels in 0..1, as
+// often as it likes; there is no framing beyond that. A newer client replaces the
+// current one.
+//
+// Samples are folded into a single peak-hold slot. The listener hears only about
+// the first sample after each takeLevel, so a 100 Hz feed wakes the UI at most
+// once per frame and short peaks between frames are not lost.
+public class AmplitudeFeed {
+
+    public static final int DEFAULT_PORT = 5002;
+
+    public interface Listener {
+        // Called on the feed thread; should only schedule a redraw
+        void onLevelAvailable();
+    }
+
+    // Sentinel for "nothing since the last take"; bits of a non-negative float are >= 0
+    private static final int EMPTY = -1;
+
+    private final int port;
+    private final Listener listener;
+    private final AtomicInteger pending = new AtomicInteger(EMPTY);
+    private volatile ServerSocket serverSocket;
+    private volatile Socket client;
+    private volatile boolean running;
+
+    public AmplitudeFeed(int port, Listener listener) {
+        this.port = port;
+        this.listener = listener;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 2, InetAddress.getByName("127.0.0.1"));
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "QuantumAI-AmplitudeFeed");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    // Peak level since the last call, or -1 if no sample arrived in between
+    public float takeLevel() {
+        int bits = pending.getAndSet(EMPTY);
+        return bits == EMPTY ? -1f : Float.intBitsToFloat(bits);
+    }
+
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        closeClient(client);
+    }
+
+    // Also usable directly by an in-process producer
+    public void offer(float level) {
+        if (!(level >= 0f)) level = 0f;
+        if (level > 1f) level = 1f;
+        int bits = Float.floatToIntBits(level);
+        while (true) {
+            int current = pending.get();
+            if (current != EMPTY && Float.intBitsToFloat(current) >= level) return;
+            if (pending.compareAndSet(current, bits)) {
+                if (current == EMPTY) listener.onLevelAvailable();
+                return;
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                closeClient(client);
+                client = socket;
+                Thread reader = new Thread(() -> readLoop(socket), "QuantumAI-AmplitudeReader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 4096));
+            while (running) {
+                offer(in.readFloat());
+            }
+        } catch (IOException e) {
+            // Client went away or was replaced
+        } finally {
+            closeClient(socket);
+        }
+    }
+
+    private static void closeClient(Socket socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.quantumai.os;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Long-lived Server-Sent Events subscription to the backend, so it can drive the
+// orb without a WebView relaying broadcasts. Understands:
+//
+//   event: state      data: idle|listening|thinking|speaking|error
+//   event: command    data: <name>[ <args>]
+//   : comment         heartbeat; any line counts as proof of life
+//
+// A connection that stays silent longer than the heartbeat timeout is dropped.
+// Reconnects back off exponentially with jitter, resetting after a good connect;
+// the last event id is sent back so the server can resume.
+//
+// State changes are coalesced: only the newest undelivered state is kept, and one
+// delivery task is in flight at a time. Commands are delivered in order.
+public class BackendEventStream {
+
+    public static final String DEFAULT_URL = "http://127.0.0.1:5000/orb/events";
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int HEARTBEAT_TIMEOUT_MS = 45_000;
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    public interface Listener {
+        void onState(String state);
+
+        void onCommand(String name, String args);
+
+        void onConnectionChanged(boolean connected);
+    }
+
+    private final URL url;
+    private final Executor executor;
+    private final Listener listener;
+    private final AtomicReference<String> pendingState = new AtomicReference<>();
+    private final Random jitter = new Random();
+    private final Object sleepLock = new Object();
+
+    private volatile boolean running;
+    private volatile HttpURLConnection connection;
+    private String lastEventId;
+    private long baseBackoff = BASE_BACKOFF_MS;
+
+    // One reusable delivery task for coalesced states
+    private final Runnable deliverStateTask = this::deliverState;
+
+    // Callbacks run on executor, e.g. the main thread's Handler::post
+    public BackendEventStream(String url, Executor executor, Listener listener) throws IOException {
+        this.url = new URL(url);
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        Thread thread = new Thread(this::connectLoop, "QuantumAI-BackendEvents");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close() {
+        running = false;
+        HttpURLConnection current = connection;
+        if (current != null) current.disconnect();
+        synchronized (sleepLock) {
+            sleepLock.notifyAll();
+        }
+    }
+
+    private void connectLoop() {
+        int attempt = 0;
+        while (running) {
+            boolean connected = false;
+            try {
+                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+                connection = conn;
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                conn.setReadTimeout(HEARTBEAT_TIMEOUT_MS);
+                conn.setRequestProperty("Accept", "text/event-stream");
+                conn.setRequestProperty("Cache-Control", "no-cache");
+                if (lastEventId != null) conn.setRequestProperty("Last-Event-ID", lastEventId);
+
+                if (conn.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    connected = true;
+                    attempt = 0;
+                    executor.execute(() -> listener.onConnectionChanged(true));
+                    read(new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8)));
+                }
+            } catch (IOException e) {
+                // Refused, timed out or dropped; retried below
+            } finally {
+                HttpURLConnection conn = connection;
+                if (conn != null) conn.disconnect();
+                connection = null;
+            }
+
+            if (connected) executor.execute(() -> listener.onConnectionChanged(false));
+            if (!running) return;
+            sleep(backoff(attempt++));
+        }
+    }
+
+    private void read(BufferedReader reader) throws IOException {
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (running && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) dispatch(event != null ? event : "message", data.toString());
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.charAt(0) == ':') continue;
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) value = value.substring(1);
+
+            switch (field) {
+                case "event":
+                    event = value;
+                    break;
+                case "data":
+                    if (data.length() > 0) data.append('\n');
+                    data.append(value);
+                    break;
+                case "id":
+                    lastEventId = value;
+                    break;
+                case "retry":
+                    try {
+                        baseBackoff = Math.max(100, Long.parseLong(value.trim()));
+                    } catch (NumberFormatException e) {
+                        // Ignored, as the SSE spec requires
+                    }
+                    break;
+            }
+        }
+    }
+
+    private void dispatch(String event, String data) {
+        switch (event) {
+            case "state":
+                // Only schedule a delivery if none is waiting; it will pick up the newest state
+                if (pendingState.getAndSet(data.trim()) == null) executor.execute(deliverStateTask);
+                break;
+            case "command": {
+                String trimmed = data.trim();
+                int space = trimmed.indexOf(' ');
+                String name = space < 0 ? trimmed : trimmed.substring(0, space);
+                String args = space < 0 ? null : trimmed.substring(space + 1);
+                executor.execute(() -> listener.onCommand(name, args));
+                break;
+            }
+        }
+    }
+
+    private void deliverState() {
+        String state = pendingState.getAndSet(null);
+        if (state != null) listener.onState(state);
+    }
+
+    private long backoff(int attempt) {
+        long delay = Math.min(MAX_BACKOFF_MS, baseBackoff << Math.min(attempt, 16));
+        // +-20% so several clients don't reconnect in lockstep
+        return (long) (delay * (0.8 + 0.4 * jitter.nextDouble()));
+    }
+
+    private void sleep(long millis) {
+        synchronized (sleepLock) {
+            if (!running) return;
+            try {
+                sleepLock.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.quantumai.os;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+
+// Polls the backend until it answers, so the WebUI isn't loaded against a port
+// that refuses connections. Any HTTP response counts as ready; only connect and
+// read failures are retried, with the delay doubling up to a cap so a backend
+// that is slow to boot isn't hammered.
+public class BackendProbe {
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int READ_TIMEOUT_MS = 2000;
+    private static final long BASE_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 2000;
+
+    public interface Listener {
+        // attempts includes the successful one
+        void onReady(int attempts, long elapsedMs);
+    }
+
+    private final URL url;
+    private final Executor executor;
+    private final Listener listener;
+    private final Object sleepLock = new Object();
+    private volatile boolean running;
+
+    // onReady runs on executor, e.g. the main thread's Handler::post
+    public BackendProbe(String url, Executor executor, Listener listener) throws IOException {
+        this.url = new URL(url);
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        Thread thread = new Thread(this::probeLoop, "QuantumAI-BackendProbe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void cancel() {
+        running = false;
+        synchronized (sleepLock) {
+            sleepLock.notifyAll();
+        }
+    }
+
+    private void probeLoop() {
+        long started = System.nanoTime();
+        long delay = BASE_BACKOFF_MS;
+        int attempts = 0;
+        while (running) {
+            attempts++;
+            if (probe()) {
+                int total = attempts;
+                long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+                running = false;
+                executor.execute(() -> listener.onReady(total, elapsedMs));
+                return;
+            }
+            sleep(delay);
+            delay = Math.min(MAX_BACKOFF_MS, delay * 2);
+        }
+    }
+
+    private boolean probe() {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestMethod("HEAD");
+            connection.getResponseCode();
+            return true;
+        } catch (IOException e) {
+            // Not listening yet
+            return false;
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    private void sleep(long millis) {
+        synchronized (sleepLock) {
+            if (!running) return;
+            try {
+                sleepLock.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.quantumai.os;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free hand-off to a single consumer thread for streams that can outrun it,
+// such as accessibility events. Works like WorkQueue (one wake per idle
+// transition, drains yield after drainBudgetNanos) but holds at most capacity
+// items: past that the oldest or the newest is dropped and handed to
+// Receiver.onDropped so it can be released.
+public class BoundedHandoff<T> {
+
+    public interface Receiver<T> {
+        // Consumer thread
+        void onItem(T item);
+
+        // Whichever thread dropped it: a producer on overflow, the consumer in clear()
+        void onDropped(T item);
+    }
+
+    public static final int POLICY_DROP_OLDEST = 0;
+    public static final int POLICY_DROP_NEWEST = 1;
+
+    private final String name;
+    private final ConcurrentLinkedQueue<T> items = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger maxSize = new AtomicInteger();
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long delivered;
+    private final Executor wake;
+    private final Receiver<T> receiver;
+    private final long drainBudgetNanos;
+    private final Runnable drainTask = this::drain;
+    private volatile int capacity;
+    private volatile int policy;
+
+    public BoundedHandoff(String name, Executor wake, Receiver<T> receiver, long drainBudgetNanos,
+                          int capacity, int policy) {
+        this.name = name;
+        this.wake = wake;
+        this.receiver = receiver;
+        this.drainBudgetNanos = drainBudgetNanos;
+        configure(capacity, policy);
+    }
+
+    // Any thread; a smaller capacity takes effect as items are offered
+    public void configure(int capacity, int policy) {
+        if (policy != POLICY_DROP_OLDEST && policy != POLICY_DROP_NEWEST) {
+            throw new IllegalArgumentException("unknown policy " + policy);
+        }
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+    }
+
+    // Producer threads
+    public void offer(T item) {
+        offered.incrementAndGet();
+        if (size.incrementAndGet() > capacity) {
+            if (policy == POLICY_DROP_NEWEST) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                receiver.onDropped(item);
+                return;
+            }
+            T oldest = items.poll();
+            if (oldest != null) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                receiver.onDropped(oldest);
+            }
+        }
+        items.offer(item);
+
+        int current = size.get();
+        int max = maxSize.get();
+        while (current > max && !maxSize.compareAndSet(max, current)) {
+            max = maxSize.get();
+        }
+        if (drainPosted.compareAndSet(false, true)) wake.execute(drainTask);
+    }
+
+    // Consumer thread: releases everything still queued, e.g. on shutdown
+    public void clear() {
+        T item;
+        while ((item = items.poll()) != null) {
+            size.decrementAndGet();
+            receiver.onDropped(item);
+        }
+    }
+
+    public String stats() {
+        return name + ": offered=" + offered.get() + " delivered=" + delivered + " dropped=" + dropped.get()
+                + " depth=" + Math.max(0, size.get()) + " maxDepth=" + maxSize.get() + " capacity=" + capacity
+                + " policy=" + (policy == POLICY_DROP_NEWEST ? "drop_newest" : "drop_oldest");
+    }
+
+    private void drain() {
+        // Cleared first: an item offered from now on either gets polled below or posts a new drain
+        drainPosted.set(false);
+        long until = System.nanoTime() + drainBudgetNanos;
+        T item;
+        while ((item = items.poll()) != null) {
+            size.decrementAndGet();
+            delivered++;
+            receiver.onItem(item);
+            if (System.nanoTime() > until) {
+                if (!items.isEmpty() && drainPosted.compareAndSet(false, true)) wake.execute(drainTask);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.quantumai.os;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Persistent loopback command channel. Each connection carries pipelined
+// request frames (see CommandFrames); responses are written back as soon as each
+// command completes, so they may arrive in any order and are matched by id.
+//
+// Any app on the device can connect to a loopback port, so a connection must
+// first send an "auth" request carrying the per-install token (see loadToken)
+// as its params. Nothing is dispatched before that; a wrong or missing token,
+// or no handshake within HANDSHAKE_TIMEOUT_MS, closes the connection.
+public class CommandChannel {
+
+    public static final int DEFAULT_PORT = 5001;
+    public static final String AUTH_ACTION = "auth";
+
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final int TOKEN_BYTES = 32;
+
+    public interface Dispatcher {
+        // Called on the connection's reader thread; must hand the work off quickly
+        void dispatch(String action, String params, CommandResultSink sink);
+    }
+
+    private final int port;
+    private final byte[] token;
+    private final Dispatcher dispatcher;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public CommandChannel(int port, String token, Dispatcher dispatcher) {
+        if (token == null || token.isEmpty()) throw new IllegalArgumentException("token required");
+        this.port = port;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.dispatcher = dispatcher;
+    }
+
+    // Reads the token kept in file, creating a random one on first use. The file
+    // should live in app-private storage so only this app (and whoever it hands
+    // the token to) can connect.
+    public static String loadToken(File file) throws IOException {
+        if (file.isFile()) {
+            try (FileInputStream in = new FileInputStream(file)) {
+                byte[] buffer = new byte[TOKEN_BYTES * 2];
+                int length = 0;
+                int read;
+                while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+                    length += read;
+                }
+                if (length == buffer.length) return new String(buffer, StandardCharsets.US_ASCII);
+            }
+        }
+
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte b : random) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        String token = hex.toString();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(token.getBytes(StandardCharsets.US_ASCII));
+        }
+        return token;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 16, InetAddress.getByName("127.0.0.1"));
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "QuantumAI-CommandChannel");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getLocalPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null ? socket.getLocalPort() : -1;
+    }
+
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                connection.start();
+            } catch (IOException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        // Single writer keeps frames intact without blocking the dispatching thread
+        private final ExecutorService writer = Executors.newSingleThreadExecutor();
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 8192));
+        }
+
+        void start() {
+            Thread reader = new Thread(this::readLoop, "QuantumAI-CommandReader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void readLoop() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8192));
+                if (!authenticate(in)) return;
+                CommandFrames.Request request;
+                while ((request = CommandFrames.readRequest(in)) != null) {
+                    final int id = request.id;
+                    dispatcher.dispatch(request.action, request.params, new CommandResultSink() {
+                        @Override
+                        public void onResult(String action, boolean success, String message) {
+                            respond(id, success, action, message, null);
+                        }
+
+                        @Override
+                        public void onPayload(String action, ByteBuffer payload, String message) {
+                            // The caller reuses its buffer, so take a copy for the writer thread
+                            byte[] bytes = new byte[payload.remaining()];
+                            payload.duplicate().get(bytes);
+                            respond(id, true, action, message, bytes);
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                // Peer went away or sent a malformed frame
+            } finally {
+                close();
+            }
+        }
+
+        private boolean authenticate(DataInputStream in) throws IOException {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            CommandFrames.Request hello = CommandFrames.readRequest(in);
+            if (hello == null || !AUTH_ACTION.equals(hello.action) || hello.params == null) return false;
+            // Constant-time compare, so the token can't be guessed byte by byte
+            if (!MessageDigest.isEqual(token, hello.params.getBytes(StandardCharsets.UTF_8))) return false;
+            socket.setSoTimeout(0);
+            return true;
+        }
+
+        private void respond(int id, boolean success, String action, String message, byte[] payload) {
+            pendingWrites.incrementAndGet();
+            try {
+                writer.execute(() -> {
+                    try {
+                        CommandFrames.writeResponse(out, id, success, action, message, payload);
+                        // Flush once per burst of completed results rather than per frame
+                        if (pendingWrites.decrementAndGet() == 0) out.flush();
+                    } catch (IOException e) {
+                        close();
+                    }
+                });
+            } catch (Exception e) {
+                // Connection already closed; the result has nowhere to go
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            writer.shutdown();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
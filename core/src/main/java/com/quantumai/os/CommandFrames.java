@@ -0,0 +1,132 @@
+package com.quantumai.os;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Length-prefixed framing for the local command channel.
+//
+// Request:  [int length][int id][string action][string params]
+// Response: [int length][int id][byte status][string action][string message][payload?]
+// where string = [int byteLength][UTF-8 bytes], status bit 0 is success and bit 1
+// means a binary payload ([int byteLength][bytes]) follows. length counts
+// everything after itself.
+public final class CommandFrames {
+
+    public static final int MAX_FRAME = 1 << 20;
+    // Responses may carry binary payloads such as screen snapshots
+    public static final int MAX_RESPONSE_FRAME = 16 << 20;
+
+    private static final int STATUS_SUCCESS = 1;
+    private static final int STATUS_PAYLOAD = 2;
+
+    private CommandFrames() {}
+
+    public static class Request {
+        public final int id;
+        public final String action;
+        public final String params;
+
+        public Request(int id, String action, String params) {
+            this.id = id;
+            this.action = action;
+            this.params = params;
+        }
+    }
+
+    public static class Response {
+        public final int id;
+        public final boolean success;
+        public final String action;
+        public final String message;
+        public final byte[] payload;
+
+        public Response(int id, boolean success, String action, String message, byte[] payload) {
+            this.id = id;
+            this.success = success;
+            this.action = action;
+            this.message = message;
+            this.payload = payload;
+        }
+    }
+
+    public static void writeRequest(DataOutputStream out, int id, String action, String params) throws IOException {
+        byte[] actionBytes = bytes(action);
+        byte[] paramBytes = bytes(params);
+        out.writeInt(4 + 4 + actionBytes.length + 4 + paramBytes.length);
+        out.writeInt(id);
+        writeBytes(out, actionBytes);
+        writeBytes(out, paramBytes);
+    }
+
+    public static void writeResponse(DataOutputStream out, int id, boolean success, String action,
+                                     String message, byte[] payload) throws IOException {
+        byte[] actionBytes = bytes(action);
+        byte[] messageBytes = bytes(message);
+        int length = 4 + 1 + 4 + actionBytes.length + 4 + messageBytes.length;
+        if (payload != null) length += 4 + payload.length;
+        out.writeInt(length);
+        out.writeInt(id);
+        out.writeByte((success ? STATUS_SUCCESS : 0) | (payload != null ? STATUS_PAYLOAD : 0));
+        writeBytes(out, actionBytes);
+        writeBytes(out, messageBytes);
+        if (payload != null) writeBytes(out, payload);
+    }
+
+    // Returns null on a clean end of stream between frames
+    public static Request readRequest(DataInputStream in) throws IOException {
+        int length = readLength(in, MAX_FRAME);
+        if (length < 0) return null;
+        int id = in.readInt();
+        String action = readString(in, length);
+        String params = readString(in, length);
+        return new Request(id, action, params);
+    }
+
+    public static Response readResponse(DataInputStream in) throws IOException {
+        int length = readLength(in, MAX_RESPONSE_FRAME);
+        if (length < 0) return null;
+        int id = in.readInt();
+        int status = in.readByte();
+        String action = readString(in, length);
+        String message = readString(in, length);
+        byte[] payload = null;
+        if ((status & STATUS_PAYLOAD) != 0) {
+            int payloadLength = in.readInt();
+            if (payloadLength < 0 || payloadLength > length) throw new IOException("Bad payload length " + payloadLength);
+            payload = new byte[payloadLength];
+            in.readFully(payload);
+        }
+        return new Response(id, (status & STATUS_SUCCESS) != 0, action, message, payload);
+    }
+
+    private static int readLength(DataInputStream in, int max) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+        if (length < 0 || length > max) throw new IOException("Bad frame length " + length);
+        return length;
+    }
+
+    private static String readString(DataInputStream in, int frameLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > frameLength) throw new IOException("Bad string length " + length);
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+}
@@ -0,0 +1,145 @@
+package com.quantumai.os;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-action latency of the command path, from receipt on whichever channel to the
+// result being handed back. Each command carries a timer (a wrapping result sink)
+// that code along the way marks as the command passes each stage:
+//
+//   receive   received -> picked up on the main thread
+//   parse     options parsed and, after leaving the queue, params parsed
+//   queue     waiting in the gesture scheduler
+//   dispatch  dispatchGesture call
+//   gesture   accepted -> completion callback
+//   total     received -> result delivered (including the broadcast or socket write)
+//
+// Stages a command never reaches are left out. report() gives p50/p99/p999 per
+// stage plus counters, one action per line.
+public class CommandMetrics {
+
+    public static final int MARK_RECEIVED = 0;
+    public static final int MARK_STARTED = 1;
+    public static final int MARK_QUEUED = 2;
+    public static final int MARK_DEQUEUED = 3;
+    public static final int MARK_PARSED = 4;
+    public static final int MARK_DISPATCHED = 5;
+    private static final int MARK_DONE = 6;
+    private static final int MARKS = 7;
+
+    private static final int STAGE_RECEIVE = 0;
+    private static final int STAGE_PARSE = 1;
+    private static final int STAGE_QUEUE = 2;
+    private static final int STAGE_DISPATCH = 3;
+    private static final int STAGE_GESTURE = 4;
+    private static final int STAGE_TOTAL = 5;
+    private static final String[] STAGE_NAMES = {"receive", "parse", "queue", "dispatch", "gesture", "total"};
+
+    // Keeps memory fixed whatever action names callers send
+    private static final int MAX_ACTIONS = 64;
+    private static final String OTHER = "other";
+
+    private static final class ActionMetrics {
+        final LatencyHistogram[] stages = new LatencyHistogram[STAGE_NAMES.length];
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+
+        ActionMetrics() {
+            for (int i = 0; i < stages.length; i++) stages[i] = new LatencyHistogram();
+        }
+    }
+
+    private final class Timer implements CommandResultSink {
+        final ActionMetrics metrics;
+        final CommandResultSink delegate;
+        // Written by whichever thread the command is on; handoffs between threads
+        // (Handler.post, the scheduler) order the writes
+        final long[] marks = new long[MARKS];
+        boolean done;
+
+        Timer(ActionMetrics metrics, CommandResultSink delegate) {
+            this.metrics = metrics;
+            this.delegate = delegate;
+            marks[MARK_RECEIVED] = System.nanoTime();
+        }
+
+        @Override
+        public void mark(int mark) {
+            // First time only, e.g. the first dispatch of a multi-gesture script
+            if (marks[mark] == 0) marks[mark] = System.nanoTime();
+        }
+
+        @Override
+        public void onResult(String action, boolean success, String message) {
+            delegate.onResult(action, success, message);
+            finish(success);
+        }
+
+        @Override
+        public void onPayload(String action, ByteBuffer payload, String message) {
+            delegate.onPayload(action, payload, message);
+            finish(true);
+        }
+
+        private void finish(boolean success) {
+            if (done) return;
+            done = true;
+            marks[MARK_DONE] = System.nanoTime();
+            (success ? metrics.succeeded : metrics.failed).incrementAndGet();
+
+            LatencyHistogram[] stages = metrics.stages;
+            record(stages[STAGE_RECEIVE], MARK_RECEIVED, MARK_STARTED);
+            if (marks[MARK_STARTED] != 0 && marks[MARK_QUEUED] != 0 && marks[MARK_DEQUEUED] != 0
+                    && marks[MARK_PARSED] != 0) {
+                stages[STAGE_PARSE].record(marks[MARK_QUEUED] - marks[MARK_STARTED]
+                        + marks[MARK_PARSED] - marks[MARK_DEQUEUED]);
+            }
+            record(stages[STAGE_QUEUE], MARK_QUEUED, MARK_DEQUEUED);
+            record(stages[STAGE_DISPATCH], MARK_PARSED, MARK_DISPATCHED);
+            record(stages[STAGE_GESTURE], MARK_DISPATCHED, MARK_DONE);
+            record(stages[STAGE_TOTAL], MARK_RECEIVED, MARK_DONE);
+        }
+
+        private void record(LatencyHistogram histogram, int from, int to) {
+            if (marks[from] != 0 && marks[to] != 0) histogram.record(marks[to] - marks[from]);
+        }
+    }
+
+    private final ConcurrentHashMap<String, ActionMetrics> actions = new ConcurrentHashMap<>();
+
+    // Starts timing a command at its receipt; results pass through to sink
+    public CommandResultSink timed(String action, CommandResultSink sink) {
+        ActionMetrics metrics = actions.get(action);
+        if (metrics == null) {
+            String key = actions.size() < MAX_ACTIONS ? action : OTHER;
+            metrics = actions.computeIfAbsent(key, k -> new ActionMetrics());
+        }
+        return new Timer(metrics, sink);
+    }
+
+    // One line per action:
+    //   tap ok=118 failed=2 receive=40/310/900us parse=... total=52000/81000/95000us
+    // with p50/p99/p999 per stage
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, ActionMetrics> entry : new TreeMap<>(actions).entrySet()) {
+            ActionMetrics metrics = entry.getValue();
+            if (report.length() > 0) report.append('\n');
+            report.append(entry.getKey())
+                    .append(" ok=").append(metrics.succeeded.get())
+                    .append(" failed=").append(metrics.failed.get());
+            for (int i = 0; i < STAGE_NAMES.length; i++) {
+                if (metrics.stages[i].getCount() == 0) continue;
+                report.append(' ').append(STAGE_NAMES[i]).append('=').append(metrics.stages[i].summary());
+            }
+        }
+        return report.length() > 0 ? report.toString() : "No commands recorded";
+    }
+
+    public void reset() {
+        actions.clear();
+    }
+}
@@ -0,0 +1,48 @@
+package com.quantumai.os;
+
+// Parsers for the plain-text params of the coordinate commands. Kept free of
+// String.split and boxing since every tap and swipe goes through them.
+public final class CommandParams {
+
+    public static final int DEFAULT_SWIPE_DURATION = 300;
+
+    private CommandParams() {}
+
+    // "x,y"
+    public static void parsePoint(String params, int[] out) {
+        if (parseInts(params, out, 2, 2) != 2) throw new IllegalArgumentException("expected x,y");
+    }
+
+    // "x1,y1,x2,y2[,duration]"; out receives all five values
+    public static void parseSwipe(String params, int[] out) {
+        int count = parseInts(params, out, 4, 5);
+        if (count < 4) throw new IllegalArgumentException("expected x1,y1,x2,y2[,duration]");
+        if (count == 4) out[4] = DEFAULT_SWIPE_DURATION;
+    }
+
+    // Comma-separated ints with optional spaces around each; returns how many were
+    // found, or -1 if the count is outside min..max
+    private static int parseInts(String text, int[] out, int min, int max) {
+        int length = text.length();
+        int count = 0;
+        int i = 0;
+        while (true) {
+            while (i < length && text.charAt(i) == ' ') i++;
+            boolean negative = i < length && text.charAt(i) == '-';
+            if (negative) i++;
+            int start = i;
+            long value = 0;
+            while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                value = value * 10 + (text.charAt(i++) - '0');
+                if (value > Integer.MAX_VALUE) throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+            if (i == start) throw new NumberFormatException("For input string: \"" + text + "\"");
+            while (i < length && text.charAt(i) == ' ') i++;
+            if (count == max) return -1;
+            out[count++] = (int) (negative ? -value : value);
+            if (i == length) break;
+            if (text.charAt(i++) != ',') throw new NumberFormatException("For input string: \"" + text + "\"");
+        }
+        return count >= min ? count : -1;
+    }
+}
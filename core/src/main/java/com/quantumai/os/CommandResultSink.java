@@ -0,0 +1,19 @@
+package com.quantumai.os;
+
+import java.nio.ByteBuffer;
+
+// Receives the outcome of one accessibility command, whichever channel it came in on
+public interface CommandResultSink {
+    void onResult(String action, boolean success, String message);
+
+    // Binary results such as screen snapshots. The buffer is only valid for the
+    // duration of the call, so sinks that deliver later must copy it.
+    default void onPayload(String action, ByteBuffer payload, String message) {
+        onResult(action, false, "Binary results are not supported on this channel");
+    }
+
+    // Notes that the command reached a stage (CommandMetrics.MARK_*); only timed
+    // sinks, and sinks that fan out to them, care
+    default void mark(int mark) {
+    }
+}
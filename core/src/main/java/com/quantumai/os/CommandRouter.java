@@ -0,0 +1,207 @@
+package com.quantumai.os;
+
+import java.util.concurrent.Executor;
+
+// The platform-independent half of command handling: timing, routing by action,
+// gesture options and queueing, tap/swipe parsing and the result messages. The
+// accessibility service is the Host and does what needs the platform (building
+// and dispatching gestures, global actions, everything to do with nodes); the
+// load test and benchmarks plug in a fake Host and run this same code.
+//
+// dispatch may be called from any thread; everything else runs on the worker
+// thread that executor feeds, which is also where gesture callbacks must arrive.
+public class CommandRouter implements CommandChannel.Dispatcher {
+
+    public interface GestureCallback {
+        void onCompleted();
+
+        void onCancelled();
+    }
+
+    public interface Host {
+        // Returns false if the platform rejected the gesture; no callback follows then
+        boolean dispatchTap(int x, int y, GestureCallback callback);
+
+        boolean dispatchSwipe(int x1, int y1, int x2, int y2, int duration, GestureCallback callback);
+
+        // Platform id of a global action such as "back" or "home", or -1 if name isn't one
+        int globalActionFor(String name);
+
+        boolean performGlobalAction(int action);
+
+        // Queued gestures other than tap and swipe: script, gesture and the node actions
+        void executeQueued(String action, String params, CommandResultSink sink);
+
+        // Any action not handled here; answers "Unknown action" if the host doesn't know it either
+        void executeOther(String action, String params, CommandResultSink sink);
+    }
+
+    private final Host host;
+    private final GestureScheduler scheduler;
+    private final CommandMetrics metrics;
+    private final Executor executor;
+
+    // Scratch for coordinate parsing; commands run one at a time on the worker thread
+    private final int[] parsedInts = new int[5];
+
+    public CommandRouter(Host host, GestureScheduler scheduler, CommandMetrics metrics, Executor executor) {
+        this.host = host;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.executor = executor;
+    }
+
+    // Any thread: starts timing the command and hands it to the worker
+    @Override
+    public void dispatch(String action, String params, CommandResultSink sink) {
+        CommandResultSink timed = metrics.timed(action, sink);
+        executor.execute(() -> execute(action, params, timed));
+    }
+
+    public void execute(String action, String params, CommandResultSink sink) {
+        sink.mark(CommandMetrics.MARK_STARTED);
+        switch (action) {
+            case "tap":
+            case "swipe":
+            case "script":
+            case "gesture":
+            case "click":
+            case "scroll":
+            case "scroll_back":
+                schedule(action, params, sink);
+                break;
+
+            case "gesture_cancel":
+                if (params != null && scheduler.cancel(params.trim())) {
+                    sink.onResult("gesture_cancel", true, "Cancelled " + params.trim());
+                } else {
+                    sink.onResult("gesture_cancel", false, "No queued command with id " + params);
+                }
+                break;
+
+            case "gesture_stats":
+                sink.onResult("gesture_stats", true, scheduler.stats());
+                break;
+
+            case "metrics":
+                // Pull endpoint for the backend; "reset" starts a fresh window after reporting
+                sink.onResult("metrics", true, metrics.report());
+                if ("reset".equals(params)) metrics.reset();
+                break;
+
+            default:
+                int globalAction = host.globalActionFor(action);
+                if (globalAction != -1) {
+                    // Global actions don't go through the gesture injector, so they skip the queue
+                    scheduler.noteBypass();
+                    boolean ok = host.performGlobalAction(globalAction);
+                    sink.onResult(action, ok, ok ? "Performed " + action : "Global action rejected");
+                } else {
+                    host.executeOther(action, params, sink);
+                }
+                break;
+        }
+    }
+
+    private void schedule(String action, String params, CommandResultSink sink) {
+        GestureScheduler.Options options;
+        try {
+            // Parse optional prefix: "[id=...;priority=high|normal|low]params"
+            options = GestureScheduler.Options.parse(params);
+        } catch (Exception e) {
+            sink.onResult(action, false, "Error: " + e.getMessage());
+            return;
+        }
+        scheduler.submit(action, options, jobSink -> {
+            switch (action) {
+                case "tap":
+                    executeTap(options.params, jobSink);
+                    break;
+                case "swipe":
+                    executeSwipe(options.params, jobSink);
+                    break;
+                default:
+                    host.executeQueued(action, options.params, jobSink);
+                    break;
+            }
+        }, sink);
+    }
+
+    private void executeTap(String params, CommandResultSink sink) {
+        if (params == null) {
+            sink.onResult("tap", false, "Error: missing coordinates");
+            return;
+        }
+
+        try {
+            // Parse coordinates: "x,y"
+            CommandParams.parsePoint(params, parsedInts);
+        } catch (Exception e) {
+            sink.onResult("tap", false, "Error: " + e.getMessage());
+            return;
+        }
+        tap("tap", parsedInts[0], parsedInts[1], sink);
+    }
+
+    private void executeSwipe(String params, CommandResultSink sink) {
+        if (params == null) {
+            sink.onResult("swipe", false, "Error: missing coordinates");
+            return;
+        }
+
+        int[] v = parsedInts;
+        try {
+            // Parse swipe: "x1,y1,x2,y2[,duration]"
+            CommandParams.parseSwipe(params, v);
+        } catch (Exception e) {
+            sink.onResult("swipe", false, "Error: " + e.getMessage());
+            return;
+        }
+        swipe("swipe", v[0], v[1], v[2], v[3], v[4], sink);
+    }
+
+    // Also used by the host for node actions that fall back to a gesture
+    public void tap(String action, int x, int y, CommandResultSink sink) {
+        sink.mark(CommandMetrics.MARK_PARSED);
+        boolean dispatched = host.dispatchTap(x, y, new GestureCallback() {
+            @Override
+            public void onCompleted() {
+                sink.onResult(action, true, "Tapped at " + x + "," + y);
+            }
+
+            @Override
+            public void onCancelled() {
+                sink.onResult(action, false, "Tap cancelled");
+            }
+        });
+
+        // No callback follows a rejected gesture
+        if (dispatched) {
+            sink.mark(CommandMetrics.MARK_DISPATCHED);
+        } else {
+            sink.onResult(action, false, "Tap rejected");
+        }
+    }
+
+    public void swipe(String action, int x1, int y1, int x2, int y2, int duration, CommandResultSink sink) {
+        sink.mark(CommandMetrics.MARK_PARSED);
+        boolean dispatched = host.dispatchSwipe(x1, y1, x2, y2, duration, new GestureCallback() {
+            @Override
+            public void onCompleted() {
+                sink.onResult(action, true, "Swiped from " + x1 + "," + y1 + " to " + x2 + "," + y2);
+            }
+
+            @Override
+            public void onCancelled() {
+                sink.onResult(action, false, "Swipe cancelled");
+            }
+        });
+
+        // No callback follows a rejected gesture
+        if (dispatched) {
+            sink.mark(CommandMetrics.MARK_DISPATCHED);
+        } else {
+            sink.onResult(action, false, "Swipe rejected");
+        }
+    }
+}
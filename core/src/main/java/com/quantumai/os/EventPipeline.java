@@ -0,0 +1,291 @@
+package com.quantumai.os;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Sits between onAccessibilityEvent and every consumer. Per-type filtering drops
+// unwanted events before they cost anything; debounced types are coalesced per
+// source (bursts of content changes in one frame become one event), and a burst
+// of distinct sources in one window collapses to a single window-level change.
+// Ready events are delivered synchronously, within the ingest or flush call.
+//
+// Runtime config, ';'-separated (see configure):
+//   mask=<int>            event types to keep (AccessibilityEvent bit mask)
+//   debounce.<type>=<ms>  hold and merge events of that type per source
+//   burst=<n>             distinct pending sources per window before collapsing
+//   queue=<n>             capacity of the thread hand-off feeding the pipeline
+//   policy=drop_oldest|drop_newest  what that hand-off drops when full
+// The last two are only stored here; the owner applies them to its
+// BoundedHandoff, the one place events can back up.
+public class EventPipeline {
+
+    public interface Sink {
+        void onEvent(UiEvent event);
+    }
+
+    public interface Scheduler {
+        void scheduleFlush(long delayMillis);
+    }
+
+    // AccessibilityEvent constants, duplicated to keep this class platform-free
+    static final int TYPE_WINDOW_CONTENT_CHANGED = 2048;
+    static final int TYPE_VIEW_SCROLLED = 4096;
+    static final int CONTENT_CHANGE_TYPE_SUBTREE = 1;
+
+    // One frame: enough to merge a layout pass worth of changes
+    private static final long DEFAULT_COALESCE = 16;
+    // A steady stream on one source still gets delivered at least this often
+    private static final int MAX_HOLD_FACTOR = 4;
+    private static final int POOL_SIZE = 64;
+
+    private final Sink sink;
+    private final Scheduler scheduler;
+
+    private int typeMask = -1;
+    private final long[] debounceByBit = new long[32];
+    private int burstLimit = 8;
+    private int queueCapacity = 256;
+    private int overflowPolicy = BoundedHandoff.POLICY_DROP_OLDEST;
+
+    private final ArrayDeque<UiEvent> ready = new ArrayDeque<>();
+    private final List<UiEvent> pending = new ArrayList<>();
+    private final Map<Object, UiEvent> pendingByKey = new HashMap<>();
+    private final ArrayDeque<UiEvent> pool = new ArrayDeque<>();
+    private long scheduledAt = Long.MAX_VALUE;
+    private boolean draining;
+
+    private long received;
+    private long filtered;
+    private long merged;
+    private long delivered;
+
+    public EventPipeline(Sink sink, Scheduler scheduler) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        debounceByBit[bit(TYPE_WINDOW_CONTENT_CHANGED)] = DEFAULT_COALESCE;
+        debounceByBit[bit(TYPE_VIEW_SCROLLED)] = DEFAULT_COALESCE;
+    }
+
+    public int getTypeMask() {
+        return typeMask;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    // Cheap pre-check so rejected events never have their source resolved
+    public boolean accepts(int type) {
+        received++;
+        if ((type & typeMask) == 0) {
+            filtered++;
+            return false;
+        }
+        return true;
+    }
+
+    public UiEvent obtain() {
+        UiEvent event = pool.poll();
+        return event != null ? event : new UiEvent();
+    }
+
+    public void ingest(UiEvent event, long now) {
+        long debounce = debounceByBit[bit(event.type)];
+        if (debounce <= 0) {
+            enqueue(event);
+        } else {
+            hold(event, now, debounce);
+        }
+        drain();
+    }
+
+    // Delivers every held event whose quiet period has passed
+    public void flush(long now) {
+        scheduledAt = Long.MAX_VALUE;
+        long nextDue = Long.MAX_VALUE;
+        for (int i = 0; i < pending.size(); ) {
+            UiEvent event = pending.get(i);
+            if (event.dueAt <= now) {
+                pending.remove(i);
+                pendingByKey.remove(keyOf(event));
+                enqueue(event);
+            } else {
+                nextDue = Math.min(nextDue, event.dueAt);
+                i++;
+            }
+        }
+        if (nextDue != Long.MAX_VALUE) schedule(nextDue, now);
+        drain();
+    }
+
+    public void configure(String spec) {
+        for (String entry : spec.split(";")) {
+            String item = entry.trim();
+            if (item.isEmpty()) continue;
+            int eq = item.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("expected key=value in '" + item + "'");
+            String key = item.substring(0, eq).trim();
+            String value = item.substring(eq + 1).trim();
+
+            if (key.equals("mask")) {
+                typeMask = (int) Long.decode(value).longValue();
+            } else if (key.startsWith("debounce.")) {
+                int type = Integer.decode(key.substring("debounce.".length()));
+                if (Integer.bitCount(type) != 1) throw new IllegalArgumentException("debounce needs a single event type");
+                debounceByBit[bit(type)] = Math.max(0, Long.parseLong(value));
+            } else if (key.equals("burst")) {
+                burstLimit = Math.max(1, Integer.parseInt(value));
+            } else if (key.equals("queue")) {
+                queueCapacity = Math.max(1, Integer.parseInt(value));
+            } else if (key.equals("policy")) {
+                if (value.equals("drop_oldest")) {
+                    overflowPolicy = BoundedHandoff.POLICY_DROP_OLDEST;
+                } else if (value.equals("drop_newest")) {
+                    overflowPolicy = BoundedHandoff.POLICY_DROP_NEWEST;
+                } else {
+                    throw new IllegalArgumentException("unknown policy '" + value + "'");
+                }
+            } else {
+                throw new IllegalArgumentException("unknown key '" + key + "'");
+            }
+        }
+    }
+
+    public String stats() {
+        return "received=" + received + " filtered=" + filtered + " merged=" + merged
+                + " delivered=" + delivered + " pending=" + pending.size();
+    }
+
+    public void clear() {
+        for (UiEvent event : pending) recycle(event);
+        for (UiEvent event : ready) recycle(event);
+        pending.clear();
+        pendingByKey.clear();
+        ready.clear();
+    }
+
+    private void hold(UiEvent event, long now, long debounce) {
+        UiEvent existing = pendingByKey.get(keyOf(event));
+        if (existing == null && event.source != null) {
+            // A pending window-level change already covers every source in the window
+            existing = pendingByKey.get(new SourceKey(event.type, event.windowId));
+        }
+        if (existing != null) {
+            // Same source again: fold it in and restart the quiet period
+            existing.contentChangeTypes |= event.contentChangeTypes;
+            existing.time = event.time;
+            existing.dueAt = Math.min(now + debounce, existing.firstSeenAt + debounce * MAX_HOLD_FACTOR);
+            merged++;
+            recycle(event);
+            schedule(existing.dueAt, now);
+            return;
+        }
+
+        event.firstSeenAt = now;
+        event.dueAt = now + debounce;
+        if (event.source != null && countPending(event.type, event.windowId) >= burstLimit) {
+            event = collapseWindow(event, now);
+        }
+        pending.add(event);
+        pendingByKey.put(keyOf(event), event);
+        schedule(event.dueAt, now);
+    }
+
+    // Replaces every pending change of this type in the window with one window-level change
+    private UiEvent collapseWindow(UiEvent event, long now) {
+        long firstSeen = now;
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            UiEvent other = pending.get(i);
+            if (other.type == event.type && other.windowId == event.windowId) {
+                firstSeen = Math.min(firstSeen, other.firstSeenAt);
+                pending.remove(i);
+                pendingByKey.remove(keyOf(other));
+                recycle(other);
+                merged++;
+            }
+        }
+        event.source = null;
+        event.contentChangeTypes = CONTENT_CHANGE_TYPE_SUBTREE;
+        event.firstSeenAt = firstSeen;
+        event.dueAt = Math.min(event.dueAt, firstSeen + debounceByBit[bit(event.type)] * MAX_HOLD_FACTOR);
+        return event;
+    }
+
+    private int countPending(int type, int windowId) {
+        int count = 0;
+        for (UiEvent event : pending) {
+            if (event.type == type && event.windowId == windowId) count++;
+        }
+        return count;
+    }
+
+    private void enqueue(UiEvent event) {
+        ready.add(event);
+    }
+
+    private void drain() {
+        // A consumer may feed events back in; the outer loop delivers them
+        if (draining) return;
+        draining = true;
+        try {
+            UiEvent event;
+            while ((event = ready.poll()) != null) {
+                delivered++;
+                sink.onEvent(event);
+                recycle(event);
+            }
+        } finally {
+            draining = false;
+        }
+    }
+
+    private void schedule(long dueAt, long now) {
+        if (dueAt >= scheduledAt) return;
+        scheduledAt = dueAt;
+        scheduler.scheduleFlush(Math.max(0, dueAt - now));
+    }
+
+    private void recycle(UiEvent event) {
+        if (event == null) return;
+        event.clear();
+        if (pool.size() < POOL_SIZE) pool.add(event);
+    }
+
+    private static Object keyOf(UiEvent event) {
+        if (event.source != null) return new SourceKey(event.type, event.source);
+        return new SourceKey(event.type, event.windowId);
+    }
+
+    private static int bit(int type) {
+        return Integer.numberOfTrailingZeros(type) & 31;
+    }
+
+    private static final class SourceKey {
+        final int type;
+        final Object source;
+
+        SourceKey(int type, Object source) {
+            this.type = type;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SourceKey)) return false;
+            SourceKey other = (SourceKey) o;
+            return type == other.type && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type + source.hashCode();
+        }
+    }
+}
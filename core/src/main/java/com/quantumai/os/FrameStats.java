@@ -0,0 +1,57 @@
+package com.quantumai.os;
+
+// Frame pacing for a Choreographer-driven loop: fed the vsync timestamp of every
+// frame the loop handles, counts how many vsyncs were skipped between them.
+public class FrameStats {
+
+    private long periodNanos;
+    private long lastFrameNanos;
+    private int frames;
+    private int dropped;
+    private long worstIntervalNanos;
+
+    public FrameStats(float refreshRate) {
+        setRefreshRate(refreshRate);
+    }
+
+    public void setRefreshRate(float refreshRate) {
+        periodNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    public void onFrame(long frameTimeNanos) {
+        if (lastFrameNanos != 0) {
+            long interval = frameTimeNanos - lastFrameNanos;
+            // Anything past half a period late means at least one vsync was missed
+            long missed = (interval + periodNanos / 2) / periodNanos - 1;
+            if (missed > 0) dropped += (int) missed;
+            if (interval > worstIntervalNanos) worstIntervalNanos = interval;
+        }
+        lastFrameNanos = frameTimeNanos;
+        frames++;
+    }
+
+    // Marks the loop idle; the next onFrame starts a new interval
+    public void pause() {
+        lastFrameNanos = 0;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+    public void reset() {
+        frames = 0;
+        dropped = 0;
+        worstIntervalNanos = 0;
+        lastFrameNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return frames + " frames, " + dropped + " dropped, worst " + (worstIntervalNanos / 100_000) / 10f + " ms";
+    }
+}
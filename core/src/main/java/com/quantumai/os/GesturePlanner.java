@@ -0,0 +1,269 @@
+package com.quantumai.os;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+// Parses a multi-finger gesture and cuts it into dispatchable segments. Fingers
+// are separated by '|', each one a ';'-separated list of moves:
+//
+//   down:x,y[,delayMs]              finger goes down (first move, delay from gesture start)
+//   hold:ms                         stays put
+//   line:x,y,ms                     straight move
+//   quad:cx,cy,x,y,ms               quadratic curve
+//   cubic:c1x,c1y,c2x,c2y,x,y,ms    cubic curve
+//
+//   pinch out:     down:540,900;line:540,500,400|down:540,1000;line:540,1400,400
+//   drag and drop: down:200,800;hold:600;line:900,300,800;hold:200
+//
+// The injector moves a stroke at constant speed along its path, so a segment ends
+// wherever any finger changes move, starts or lifts, and long moves are cut at
+// maxSegmentDuration. Within a segment every finger down spans the whole segment;
+// fingers that stay down across a cut are continued strokes (API 26+).
+public class GesturePlanner {
+
+    // Curves are flattened so they can be cut at any point along their length
+    private static final int CURVE_STEPS = 16;
+
+    public static class Stroke {
+        public final int finger;
+        // x0,y0,x1,y1,... to be joined with lines; one point for a finger at rest
+        public final float[] points;
+        // Continues this finger's stroke from the previous segment
+        public final boolean continued;
+        // Stays down into the next segment
+        public final boolean willContinue;
+
+        Stroke(int finger, float[] points, boolean continued, boolean willContinue) {
+            this.finger = finger;
+            this.points = points;
+            this.continued = continued;
+            this.willContinue = willContinue;
+        }
+    }
+
+    public static class Segment {
+        public final long duration;
+        public final List<Stroke> strokes = new ArrayList<>();
+
+        Segment(long duration) {
+            this.duration = duration;
+        }
+    }
+
+    private static class Move {
+        long start;
+        long end;
+        // Polyline with cumulative arc length per point
+        final float[] points;
+        final float[] lengths;
+
+        Move(float[] points) {
+            this.points = points;
+            this.lengths = new float[points.length / 2];
+            for (int i = 1; i < lengths.length; i++) {
+                float dx = points[i * 2] - points[i * 2 - 2];
+                float dy = points[i * 2 + 1] - points[i * 2 - 1];
+                lengths[i] = lengths[i - 1] + (float) Math.sqrt(dx * dx + dy * dy);
+            }
+        }
+
+        // Part of the polyline between two fractions of its length
+        float[] slice(float from, float to) {
+            float total = lengths[lengths.length - 1];
+            if (total == 0) return new float[]{points[0], points[1]};
+            List<Float> out = new ArrayList<>();
+            addPoint(out, from * total);
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] > from * total && lengths[i] < to * total) {
+                    out.add(points[i * 2]);
+                    out.add(points[i * 2 + 1]);
+                }
+            }
+            addPoint(out, to * total);
+            float[] result = new float[out.size()];
+            for (int i = 0; i < result.length; i++) result[i] = out.get(i);
+            return result;
+        }
+
+        private void addPoint(List<Float> out, float distance) {
+            int i = 1;
+            while (i < lengths.length - 1 && lengths[i] < distance) i++;
+            float span = lengths[i] - lengths[i - 1];
+            float t = span == 0 ? 0 : (distance - lengths[i - 1]) / span;
+            out.add(points[i * 2 - 2] + (points[i * 2] - points[i * 2 - 2]) * t);
+            out.add(points[i * 2 - 1] + (points[i * 2 + 1] - points[i * 2 - 1]) * t);
+        }
+    }
+
+    private static class Finger {
+        long down;
+        long up;
+        final List<Move> moves = new ArrayList<>();
+
+        Move moveAt(long from, long to) {
+            for (Move move : moves) {
+                if (move.start <= from && move.end >= to) return move;
+            }
+            return null;
+        }
+    }
+
+    private final List<Finger> fingers;
+
+    private GesturePlanner(List<Finger> fingers) {
+        this.fingers = fingers;
+    }
+
+    public int getFingerCount() {
+        return fingers.size();
+    }
+
+    public static GesturePlanner parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) throw new IllegalArgumentException("empty gesture");
+
+        List<Finger> fingers = new ArrayList<>();
+        for (String fingerSpec : spec.split("\\|")) {
+            fingers.add(parseFinger(fingers.size(), fingerSpec));
+        }
+        return new GesturePlanner(fingers);
+    }
+
+    private static Finger parseFinger(int index, String spec) {
+        Finger finger = new Finger();
+        float x = 0, y = 0;
+        long time = 0;
+        boolean down = false;
+
+        for (String token : spec.split(";")) {
+            token = token.trim();
+            if (token.isEmpty()) continue;
+            int colon = token.indexOf(':');
+            String name = (colon < 0 ? token : token.substring(0, colon)).trim();
+            int[] v = GestureScript.parseInts(colon < 0 ? null : token.substring(colon + 1));
+
+            if (!down) {
+                if (!name.equals("down") || (v.length != 2 && v.length != 3)) {
+                    throw new IllegalArgumentException("finger " + index + " must start with down:x,y[,delay]");
+                }
+                x = v[0];
+                y = v[1];
+                time = v.length == 3 ? v[2] : 0;
+                if (time < 0) throw new IllegalArgumentException("negative delay for finger " + index);
+                finger.down = time;
+                down = true;
+                continue;
+            }
+
+            float[] points;
+            long duration;
+            switch (name) {
+                case "hold":
+                    requireArgs(name, v, 1, index);
+                    points = new float[]{x, y};
+                    duration = v[0];
+                    break;
+                case "line":
+                    requireArgs(name, v, 3, index);
+                    points = new float[]{x, y, v[0], v[1]};
+                    duration = v[2];
+                    break;
+                case "quad":
+                    requireArgs(name, v, 5, index);
+                    points = flatten(x, y, v[0], v[1], v[0], v[1], v[2], v[3], true);
+                    duration = v[4];
+                    break;
+                case "cubic":
+                    requireArgs(name, v, 7, index);
+                    points = flatten(x, y, v[0], v[1], v[2], v[3], v[4], v[5], false);
+                    duration = v[6];
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown move '" + name + "' for finger " + index);
+            }
+            if (duration <= 0) throw new IllegalArgumentException("bad duration for " + name + " on finger " + index);
+
+            Move move = new Move(points);
+            move.start = time;
+            move.end = time + duration;
+            finger.moves.add(move);
+            time = move.end;
+            x = points[points.length - 2];
+            y = points[points.length - 1];
+        }
+
+        if (finger.moves.isEmpty()) throw new IllegalArgumentException("finger " + index + " has no moves");
+        finger.up = time;
+        return finger;
+    }
+
+    private static void requireArgs(String name, int[] values, int count, int finger) {
+        if (values.length != count) {
+            throw new IllegalArgumentException(name + " needs " + count + " values on finger " + finger);
+        }
+    }
+
+    // Quadratic curves pass their single control point twice
+    private static float[] flatten(float x0, float y0, float c1x, float c1y, float c2x, float c2y,
+                                   float x1, float y1, boolean quadratic) {
+        float[] points = new float[(CURVE_STEPS + 1) * 2];
+        for (int i = 0; i <= CURVE_STEPS; i++) {
+            float t = i / (float) CURVE_STEPS;
+            float u = 1 - t;
+            if (quadratic) {
+                points[i * 2] = u * u * x0 + 2 * u * t * c1x + t * t * x1;
+                points[i * 2 + 1] = u * u * y0 + 2 * u * t * c1y + t * t * y1;
+            } else {
+                points[i * 2] = u * u * u * x0 + 3 * u * u * t * c1x + 3 * u * t * t * c2x + t * t * t * x1;
+                points[i * 2 + 1] = u * u * u * y0 + 3 * u * u * t * c1y + 3 * u * t * t * c2y + t * t * t * y1;
+            }
+        }
+        return points;
+    }
+
+    public List<Segment> plan(int maxStrokes, long maxSegmentDuration) {
+        if (fingers.size() > maxStrokes) {
+            throw new IllegalArgumentException(fingers.size() + " fingers, at most " + maxStrokes + " supported");
+        }
+
+        TreeSet<Long> cuts = new TreeSet<>();
+        for (Finger finger : fingers) {
+            cuts.add(finger.down);
+            for (Move move : finger.moves) cuts.add(move.end);
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        Long previous = null;
+        for (long cut : cuts) {
+            if (previous != null) {
+                // Equal pieces no longer than the limit
+                long span = cut - previous;
+                int pieces = (int) ((span + maxSegmentDuration - 1) / maxSegmentDuration);
+                long from = previous;
+                for (int i = 1; i <= pieces; i++) {
+                    long to = i == pieces ? cut : previous + span * i / pieces;
+                    segments.add(segment(from, to));
+                    from = to;
+                }
+            }
+            previous = cut;
+        }
+        return segments;
+    }
+
+    private Segment segment(long from, long to) {
+        Segment segment = new Segment(to - from);
+        for (int i = 0; i < fingers.size(); i++) {
+            Finger finger = fingers.get(i);
+            if (finger.down > from || finger.up < to) continue;
+            Move move = finger.moveAt(from, to);
+            float length = move.end - move.start;
+            segment.strokes.add(new Stroke(i, move.slice((from - move.start) / length, (to - move.start) / length),
+                    from > finger.down, to < finger.up));
+        }
+        if (segment.strokes.isEmpty()) {
+            throw new IllegalArgumentException("no finger is down between " + from + " and " + to + " ms");
+        }
+        return segment;
+    }
+}
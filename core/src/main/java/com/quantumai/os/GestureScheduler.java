@@ -0,0 +1,294 @@
+package com.quantumai.os;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Runs gesture commands one at a time. dispatchGesture cancels whatever gesture is
+// still in flight, so commands arriving close together used to knock each other
+// out; here the next one starts only after the previous one has reported.
+//
+// Commands may carry options ahead of their params:
+//
+//   [id=t1;priority=high]540,1200
+//
+// priority is high, normal (default) or low; within a level commands run in
+// arrival order. An id lets a queued command be cancelled. A command identical to
+// one still queued (same action and params) is not run twice: its caller gets the
+// queued command's result, and the queued command moves up to the higher priority.
+//
+// Confined to the thread that delivers gesture callbacks (the service worker thread).
+public class GestureScheduler {
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    private static final int THROUGHPUT_SAMPLES = 32;
+    private static final long THROUGHPUT_WINDOW_NANOS = 10_000_000_000L;
+
+    // Starts the command and reports its outcome to sink exactly once
+    public interface Task {
+        void run(CommandResultSink sink);
+    }
+
+    public static final class Options {
+        public final String id;
+        public final int priority;
+        // The command's own params, without the options prefix
+        public final String params;
+
+        Options(String id, int priority, String params) {
+            this.id = id;
+            this.priority = priority;
+            this.params = params;
+        }
+
+        public static Options parse(String params) {
+            if (params == null || !params.startsWith("[")) return new Options(null, PRIORITY_NORMAL, params);
+            int close = params.indexOf(']');
+            if (close < 0) throw new IllegalArgumentException("unterminated options");
+
+            String id = null;
+            int priority = PRIORITY_NORMAL;
+            for (String part : params.substring(1, close).split(";")) {
+                int eq = part.indexOf('=');
+                if (eq < 0) continue;
+                String key = part.substring(0, eq).trim();
+                String value = part.substring(eq + 1).trim();
+                if (key.equals("id")) {
+                    id = value.isEmpty() ? null : value;
+                } else if (key.equals("priority")) {
+                    priority = parsePriority(value);
+                } else {
+                    throw new IllegalArgumentException("unknown option '" + key + "'");
+                }
+            }
+            return new Options(id, priority, params.substring(close + 1));
+        }
+
+        private static int parsePriority(String value) {
+            switch (value) {
+                case "high":
+                    return PRIORITY_HIGH;
+                case "normal":
+                    return PRIORITY_NORMAL;
+                case "low":
+                    return PRIORITY_LOW;
+                default:
+                    throw new IllegalArgumentException("unknown priority '" + value + "'");
+            }
+        }
+    }
+
+    private final class Job implements CommandResultSink {
+        final String action;
+        final String key;
+        final Task task;
+        final long enqueuedAt = System.nanoTime();
+        final List<CommandResultSink> sinks = new ArrayList<>(1);
+        final List<String> ids = new ArrayList<>(1);
+        int priority;
+        boolean finished;
+
+        Job(String action, String key, Task task, int priority) {
+            this.action = action;
+            this.key = key;
+            this.task = task;
+            this.priority = priority;
+        }
+
+        @Override
+        public void onResult(String resultAction, boolean success, String message) {
+            if (finished) return;
+            complete(this);
+            for (CommandResultSink sink : sinks) sink.onResult(resultAction, success, message);
+            scheduleNext();
+        }
+
+        @Override
+        public void onPayload(String resultAction, ByteBuffer payload, String message) {
+            if (finished) return;
+            complete(this);
+            for (CommandResultSink sink : sinks) sink.onPayload(resultAction, payload.duplicate(), message);
+            scheduleNext();
+        }
+
+        @Override
+        public void mark(int mark) {
+            for (CommandResultSink sink : sinks) sink.mark(mark);
+        }
+    }
+
+    private final Executor executor;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Job>[] queues = new ArrayDeque[]{new ArrayDeque<Job>(), new ArrayDeque<Job>(), new ArrayDeque<Job>()};
+    private final Map<String, Job> queuedByKey = new HashMap<>();
+    private final Map<String, Job> byId = new HashMap<>();
+    private final Runnable startNext = this::startNext;
+    private Job running;
+    private boolean nextPosted;
+
+    private int depth;
+    private int maxDepth;
+    private long submitted;
+    private long completed;
+    private long deduplicated;
+    private long cancelled;
+    private long bypassed;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private final long[] completionTimes = new long[THROUGHPUT_SAMPLES];
+    private int completionIndex;
+
+    // executor starts the next command once the previous one has reported, e.g.
+    // the worker thread's Handler::post, so completion callbacks never nest
+    public GestureScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void submit(String action, Options options, Task task, CommandResultSink sink) {
+        submitted++;
+        sink.mark(CommandMetrics.MARK_QUEUED);
+        if (options.id != null && byId.containsKey(options.id)) {
+            sink.onResult(action, false, "Error: id '" + options.id + "' is already in use");
+            return;
+        }
+
+        String key = action + '\u0000' + options.params;
+        Job job = queuedByKey.get(key);
+        if (job != null) {
+            deduplicated++;
+            if (options.priority < job.priority) {
+                queues[job.priority].remove(job);
+                job.priority = options.priority;
+                queues[job.priority].addLast(job);
+            }
+        } else {
+            job = new Job(action, key, task, options.priority);
+            queues[job.priority].addLast(job);
+            queuedByKey.put(key, job);
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        job.sinks.add(sink);
+        job.ids.add(options.id);
+        if (options.id != null) byId.put(options.id, job);
+
+        if (running == null) scheduleNext();
+    }
+
+    // Commands that don't touch the gesture pipeline (global actions) run at once;
+    // they are only counted here
+    public void noteBypass() {
+        bypassed++;
+    }
+
+    // Removes a queued command; one that has already been dispatched runs to completion
+    public boolean cancel(String id) {
+        Job job = byId.get(id);
+        if (job == null || job == running) return false;
+
+        int caller = job.ids.indexOf(id);
+        CommandResultSink sink = job.sinks.remove(caller);
+        job.ids.remove(caller);
+        byId.remove(id);
+        cancelled++;
+        // A deduplicated command keeps running for its other callers
+        if (job.sinks.isEmpty()) {
+            job.finished = true;
+            queues[job.priority].remove(job);
+            queuedByKey.remove(job.key);
+            depth--;
+        }
+        sink.onResult(job.action, false, "Cancelled " + id);
+        return true;
+    }
+
+    // Fails every queued command, e.g. when the service goes away
+    public void cancelAll(String reason) {
+        for (ArrayDeque<Job> queue : queues) {
+            for (Iterator<Job> it = queue.iterator(); it.hasNext(); ) {
+                Job job = it.next();
+                it.remove();
+                job.finished = true;
+                cancelled += job.sinks.size();
+                for (CommandResultSink sink : job.sinks) sink.onResult(job.action, false, reason);
+            }
+        }
+        queuedByKey.clear();
+        byId.clear();
+        if (running != null) {
+            for (String id : running.ids) {
+                if (id != null) byId.put(id, running);
+            }
+        }
+        depth = 0;
+    }
+
+    public String stats() {
+        long now = System.nanoTime();
+        int samples = 0;
+        long oldest = now;
+        for (long time : completionTimes) {
+            if (time == 0 || now - time > THROUGHPUT_WINDOW_NANOS) continue;
+            samples++;
+            oldest = Math.min(oldest, time);
+        }
+        // Completions per second over the recent window
+        float throughput = samples > 1 ? (samples - 1) * 1e9f / Math.max(1, now - oldest) : 0f;
+        long started = completed + (running != null ? 1 : 0);
+        return "depth=" + depth + " maxDepth=" + maxDepth + " running=" + (running != null ? running.action : "none")
+                + " submitted=" + submitted + " completed=" + completed + " deduplicated=" + deduplicated
+                + " cancelled=" + cancelled + " bypassed=" + bypassed
+                + " avgWaitMs=" + (started > 0 ? totalWaitNanos / started / 1_000_000 : 0)
+                + " maxWaitMs=" + maxWaitNanos / 1_000_000
+                + " throughput=" + Math.round(throughput * 10) / 10f + "/s";
+    }
+
+    private void scheduleNext() {
+        if (nextPosted) return;
+        nextPosted = true;
+        executor.execute(startNext);
+    }
+
+    private void startNext() {
+        nextPosted = false;
+        if (running != null) return;
+        Job job = null;
+        for (ArrayDeque<Job> queue : queues) {
+            job = queue.pollFirst();
+            if (job != null) break;
+        }
+        if (job == null) return;
+
+        queuedByKey.remove(job.key);
+        depth--;
+        long wait = System.nanoTime() - job.enqueuedAt;
+        totalWaitNanos += wait;
+        maxWaitNanos = Math.max(maxWaitNanos, wait);
+        running = job;
+        job.mark(CommandMetrics.MARK_DEQUEUED);
+        try {
+            job.task.run(job);
+        } catch (Exception e) {
+            job.onResult(job.action, false, "Error: " + e.getMessage());
+        }
+    }
+
+    private void complete(Job job) {
+        job.finished = true;
+        if (running == job) running = null;
+        for (String id : job.ids) {
+            if (id != null) byId.remove(id);
+        }
+        completed++;
+        completionTimes[completionIndex] = System.nanoTime();
+        completionIndex = (completionIndex + 1) % THROUGHPUT_SAMPLES;
+    }
+}
@@ -0,0 +1,190 @@
+package com.quantumai.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Parses a multi-step script ("tap:100,200;wait:300;swipe:10,20,30,40,250;back")
+// and packs consecutive timed strokes into as few gestures as the platform allows.
+public class GestureScript {
+
+    public static final int STEP_TAP = 0;
+    public static final int STEP_SWIPE = 1;
+    public static final int STEP_WAIT = 2;
+    public static final int STEP_GLOBAL = 3;
+
+    public static final long TAP_DURATION = 50;
+    public static final long SWIPE_DURATION = 300;
+    // Keeps back-to-back strokes from being merged into one touch by the injector
+    public static final long STROKE_GAP = 10;
+
+    public static class Step {
+        public final int index;
+        public final int kind;
+        public final String name;
+        public int x1, y1, x2, y2;
+        public long duration;
+
+        Step(int index, int kind, String name) {
+            this.index = index;
+            this.kind = kind;
+            this.name = name;
+        }
+    }
+
+    public static class Segment {
+        // Delay before this segment starts, relative to the end of the previous one
+        public long delayBefore;
+        public final List<Step> steps = new ArrayList<>();
+        // Stroke start offsets inside the gesture, parallel to steps (gesture segments only)
+        public final List<Long> startTimes = new ArrayList<>();
+        public final boolean gesture;
+
+        Segment(boolean gesture) {
+            this.gesture = gesture;
+        }
+    }
+
+    private final List<Step> steps;
+
+    private GestureScript(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public static GestureScript parse(String script) {
+        if (script == null) throw new IllegalArgumentException("empty script");
+
+        List<Step> steps = new ArrayList<>();
+        int start = 0;
+        int length = script.length();
+        while (start <= length) {
+            int end = script.indexOf(';', start);
+            if (end < 0) end = length;
+            String token = script.substring(start, end).trim();
+            if (!token.isEmpty()) {
+                steps.add(parseStep(steps.size(), token));
+            }
+            start = end + 1;
+        }
+        if (steps.isEmpty()) throw new IllegalArgumentException("empty script");
+        return new GestureScript(steps);
+    }
+
+    private static Step parseStep(int index, String token) {
+        int colon = token.indexOf(':');
+        String name = (colon < 0 ? token : token.substring(0, colon)).trim();
+        String args = colon < 0 ? null : token.substring(colon + 1);
+        int[] values = parseInts(args);
+
+        switch (name) {
+            case "tap": {
+                if (values.length != 2) throw new IllegalArgumentException("tap needs x,y at step " + index);
+                Step step = new Step(index, STEP_TAP, name);
+                step.x1 = step.x2 = values[0];
+                step.y1 = step.y2 = values[1];
+                step.duration = TAP_DURATION;
+                return step;
+            }
+            case "swipe": {
+                if (values.length < 4) throw new IllegalArgumentException("swipe needs x1,y1,x2,y2 at step " + index);
+                Step step = new Step(index, STEP_SWIPE, name);
+                step.x1 = values[0];
+                step.y1 = values[1];
+                step.x2 = values[2];
+                step.y2 = values[3];
+                step.duration = values.length > 4 ? values[4] : SWIPE_DURATION;
+                if (step.duration <= 0) throw new IllegalArgumentException("bad swipe duration at step " + index);
+                return step;
+            }
+            case "wait": {
+                if (values.length != 1 || values[0] < 0) throw new IllegalArgumentException("wait needs ms at step " + index);
+                Step step = new Step(index, STEP_WAIT, name);
+                step.duration = values[0];
+                return step;
+            }
+            default:
+                if (values.length != 0) throw new IllegalArgumentException("unexpected args for " + name + " at step " + index);
+                return new Step(index, STEP_GLOBAL, name);
+        }
+    }
+
+    static int[] parseInts(String args) {
+        if (args == null || args.trim().isEmpty()) return new int[0];
+        int count = 1;
+        for (int i = 0; i < args.length(); i++) {
+            if (args.charAt(i) == ',') count++;
+        }
+        int[] values = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = args.indexOf(',', start);
+            if (end < 0) end = args.length();
+            values[i] = Integer.parseInt(args.substring(start, end).trim());
+            start = end + 1;
+        }
+        return values;
+    }
+
+    // Taps and swipes share one gesture until a global action, the stroke limit or
+    // the duration limit forces a new dispatch. Waits become stroke offsets inside a
+    // gesture or delays between segments.
+    public List<Segment> plan(int maxStrokes, long maxDuration) {
+        List<Segment> segments = new ArrayList<>();
+        Segment current = null;
+        long lastEnd = 0;
+        long pendingWait = 0;
+
+        for (Step step : steps) {
+            switch (step.kind) {
+                case STEP_WAIT:
+                    pendingWait += step.duration;
+                    break;
+
+                case STEP_GLOBAL: {
+                    Segment segment = new Segment(false);
+                    segment.delayBefore = pendingWait;
+                    segment.steps.add(step);
+                    segments.add(segment);
+                    current = null;
+                    pendingWait = 0;
+                    break;
+                }
+
+                default: {
+                    if (step.duration > maxDuration) {
+                        throw new IllegalArgumentException("step " + step.index + " exceeds max gesture duration");
+                    }
+                    long start = 0;
+                    if (current != null) {
+                        start = lastEnd + Math.max(STROKE_GAP, pendingWait);
+                        if (current.steps.size() >= maxStrokes || start + step.duration > maxDuration) {
+                            current = null;
+                        }
+                    }
+                    if (current == null) {
+                        current = new Segment(true);
+                        current.delayBefore = pendingWait;
+                        segments.add(current);
+                        start = 0;
+                    }
+                    current.steps.add(step);
+                    current.startTimes.add(start);
+                    lastEnd = start + step.duration;
+                    pendingWait = 0;
+                    break;
+                }
+            }
+        }
+
+        // A trailing wait still has to elapse before the script reports completion
+        if (pendingWait > 0) {
+            Segment segment = new Segment(false);
+            segment.delayBefore = pendingWait;
+            segments.add(segment);
+        }
+        return segments;
+    }
+}
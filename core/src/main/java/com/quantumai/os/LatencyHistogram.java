@@ -0,0 +1,83 @@
+package com.quantumai.os;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fixed-size, lock-free latency histogram. Values are kept in microseconds with
+// log-linear buckets: 8 per power of two, so any reported value is within 12.5%
+// of the true one, from 1 us up to about 70 minutes, in 1 KB. Recording is a
+// shift, a leading-zero count and one atomic increment, cheap enough to leave on.
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 33;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        // >> 10 instead of / 1000: 1.024 us units are close enough and much cheaper
+        long micros = nanos >> 10;
+        counts.incrementAndGet(bucketOf(micros));
+        long currentMax = max.get();
+        while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        return count;
+    }
+
+    // Upper bound of the bucket holding the given quantile, in microseconds
+    public long percentile(double quantile) {
+        long total = getCount();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    public long getMax() {
+        return (max.get() * 1024) / 1000;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        max.set(0);
+    }
+
+    // "p50/p99/p999us"
+    public String summary() {
+        return percentile(0.5) + "/" + percentile(0.99) + "/" + percentile(0.999) + "us";
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) Math.max(micros, 0);
+        if (micros >>> (MAX_EXPONENT + 1) != 0) return BUCKETS - 1;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // In real microseconds, undoing the 1.024 us unit
+    static long upperBoundOf(int bucket) {
+        long units;
+        if (bucket < SUB_BUCKETS) {
+            units = bucket + 1;
+        } else {
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            units = (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS);
+        }
+        return units * 1024 / 1000;
+    }
+}
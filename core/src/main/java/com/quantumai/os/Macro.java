@@ -0,0 +1,149 @@
+package com.quantumai.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Turns a recorded event stream into replayable command steps. Each step knows
+// which UI signal showed the original action had landed, so replay can move on
+// as soon as that signal shows up again instead of sleeping.
+public class Macro {
+
+    // AccessibilityEvent type constants, duplicated to keep this class platform-free
+    static final int TYPE_VIEW_CLICKED = 1;
+    static final int TYPE_VIEW_LONG_CLICKED = 2;
+    static final int TYPE_VIEW_TEXT_CHANGED = 16;
+    static final int TYPE_WINDOW_STATE_CHANGED = 32;
+    static final int TYPE_WINDOW_CONTENT_CHANGED = 2048;
+    static final int TYPE_VIEW_SCROLLED = 4096;
+
+    // Scroll events on the same container closer together than this are one fling
+    private static final long SCROLL_BURST = 500;
+
+    public static class Step {
+        public String action;
+        public String params;
+        // Selector for the node this step acts on, null for coordinate steps
+        public String target;
+        // Event type and package that followed the original action, 0/null if none
+        public int expectedType;
+        public String expectedPackage;
+        // Time between the previous step and this one in the recording
+        public long originalGap;
+        long time;
+        long lastEventTime;
+        String node;
+
+        @Override
+        public String toString() {
+            return action + ":" + params;
+        }
+    }
+
+    private final List<Step> steps;
+
+    private Macro(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public static Macro fromEvents(List<WorkflowReader.Event> events) {
+        List<Step> steps = new ArrayList<>();
+        Step previous = null;
+
+        for (WorkflowReader.Event event : events) {
+            switch (event.type) {
+                case TYPE_VIEW_CLICKED:
+                case TYPE_VIEW_LONG_CLICKED: {
+                    Step step = new Step();
+                    step.target = selectorFor(event);
+                    if (step.target != null) {
+                        step.action = "click";
+                        step.params = step.target;
+                    } else if (event.hasBounds()) {
+                        step.action = "tap";
+                        step.params = (event.left + event.right) / 2 + "," + (event.top + event.bottom) / 2;
+                    } else {
+                        continue;
+                    }
+                    previous = add(steps, step, event, previous);
+                    break;
+                }
+
+                case TYPE_VIEW_TEXT_CHANGED: {
+                    String target = idSelector(event.node);
+                    if (target == null) continue;
+                    // Typing produces one event per keystroke; only the final text matters
+                    if (previous != null && previous.action.equals("set_text") && event.node.equals(previous.node)) {
+                        previous.params = target + "|" + (event.text != null ? event.text : "");
+                        continue;
+                    }
+                    Step step = new Step();
+                    step.action = "set_text";
+                    step.target = target;
+                    step.params = target + "|" + (event.text != null ? event.text : "");
+                    previous = add(steps, step, event, previous);
+                    break;
+                }
+
+                case TYPE_VIEW_SCROLLED: {
+                    String target = idSelector(event.node);
+                    if (target == null) continue;
+                    // A fling reports many scroll events on the same container
+                    if (previous != null && previous.action.equals("scroll") && event.node.equals(previous.node)
+                            && event.time - previous.lastEventTime < SCROLL_BURST) {
+                        previous.lastEventTime = event.time;
+                        continue;
+                    }
+                    Step step = new Step();
+                    step.action = "scroll";
+                    step.target = target;
+                    step.params = target;
+                    previous = add(steps, step, event, previous);
+                    break;
+                }
+
+                case TYPE_WINDOW_STATE_CHANGED:
+                    if (previous != null && previous.expectedType != TYPE_WINDOW_STATE_CHANGED) {
+                        previous.expectedType = TYPE_WINDOW_STATE_CHANGED;
+                        previous.expectedPackage = event.packageName;
+                    }
+                    break;
+
+                case TYPE_WINDOW_CONTENT_CHANGED:
+                    if (previous != null && previous.expectedType == 0) {
+                        previous.expectedType = TYPE_WINDOW_CONTENT_CHANGED;
+                        previous.expectedPackage = event.packageName;
+                    }
+                    break;
+            }
+        }
+        return new Macro(steps);
+    }
+
+    private static Step add(List<Step> steps, Step step, WorkflowReader.Event event, Step previous) {
+        step.time = event.time;
+        step.lastEventTime = event.time;
+        step.node = event.node;
+        step.originalGap = previous != null ? Math.max(0, event.time - previous.time) : 0;
+        steps.add(step);
+        return step;
+    }
+
+    private static String selectorFor(WorkflowReader.Event event) {
+        String byId = idSelector(event.node);
+        if (byId != null) return byId;
+        if (event.text != null && !event.text.trim().isEmpty() && event.text.indexOf('\'') < 0) {
+            return "text='" + event.text + "'";
+        }
+        return null;
+    }
+
+    // The recorder stores the view id when there is one and the class name otherwise
+    private static String idSelector(String node) {
+        if (node == null || !node.contains(":id/") || node.indexOf('\'') >= 0) return null;
+        return "id='" + node + "'";
+    }
+}
@@ -0,0 +1,244 @@
+package com.quantumai.os;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// UiSelector-style query over a UiNodeIndex, compiled once and cached.
+//
+//   text=Send                        exact text (trimmed, case-insensitive)
+//   id=com.app:id/send & clickable   predicates in one step are joined with '&'
+//   class=ListView >> text~=Alice    '>>' any descendant, '>' direct child
+//   desc='Play, pause'               quote values containing '&', '>' or spaces
+//
+// Keys: id, text, text~ (contains), desc, desc~, class (full or simple name), and
+// the bare flags clickable, editable, scrollable, checkable, checked, enabled, visible.
+public class NodeSelector {
+
+    private static final int CACHE_SIZE = 128;
+
+    private static final Map<String, NodeSelector> cache =
+            new LinkedHashMap<String, NodeSelector>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, NodeSelector> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private static class Step {
+        String viewId;
+        String text;
+        String textContains;
+        String description;
+        String descriptionContains;
+        String className;
+        int requiredFlags;
+        // How this step relates to the previous one
+        boolean directChild;
+
+        boolean matches(UiNode node) {
+            if ((node.flags & requiredFlags) != requiredFlags) return false;
+            if (viewId != null && !viewId.equals(node.viewId)) return false;
+            if (text != null && !text.equals(UiNodeIndex.normalize(node.text))) return false;
+            if (description != null && !description.equals(UiNodeIndex.normalize(node.description))) return false;
+            if (textContains != null && !containsIgnoreCase(node.text, textContains)) return false;
+            if (descriptionContains != null && !containsIgnoreCase(node.description, descriptionContains)) return false;
+            if (className != null) {
+                String name = node.className;
+                if (name == null) return false;
+                if (!name.equals(className) && !name.endsWith("." + className)) return false;
+            }
+            return true;
+        }
+    }
+
+    private final String source;
+    private final Step[] steps;
+
+    private NodeSelector(String source, Step[] steps) {
+        this.source = source;
+        this.steps = steps;
+    }
+
+    public static NodeSelector compile(String selector) {
+        if (selector == null) throw new IllegalArgumentException("empty selector");
+        synchronized (cache) {
+            NodeSelector compiled = cache.get(selector);
+            if (compiled == null) {
+                compiled = new NodeSelector(selector, parse(selector));
+                cache.put(selector, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    // Matches in index order; uses a hash lookup for the last step whenever it has
+    // an exact id, text or description and only walks the tree otherwise.
+    public List<UiNode> find(UiNodeIndex index) {
+        Step last = steps[steps.length - 1];
+        List<UiNode> candidates;
+        if (last.viewId != null) {
+            candidates = index.findByViewId(last.viewId);
+        } else if (last.text != null) {
+            candidates = index.findByText(last.text);
+        } else if (last.description != null) {
+            candidates = index.findByDescription(last.description);
+        } else {
+            candidates = new ArrayList<>();
+            collect(index.getRoot(), candidates);
+        }
+
+        List<UiNode> result = new ArrayList<>();
+        for (UiNode node : candidates) {
+            if (matchesAt(node, steps.length - 1)) result.add(node);
+        }
+        return result;
+    }
+
+    public UiNode findFirst(UiNodeIndex index) {
+        List<UiNode> nodes = find(index);
+        return nodes.isEmpty() ? null : nodes.get(0);
+    }
+
+    private boolean matchesAt(UiNode node, int stepIndex) {
+        Step step = steps[stepIndex];
+        if (!step.matches(node)) return false;
+        if (stepIndex == 0) return true;
+
+        if (step.directChild) {
+            return node.parent != null && matchesAt(node.parent, stepIndex - 1);
+        }
+        for (UiNode ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+            if (matchesAt(ancestor, stepIndex - 1)) return true;
+        }
+        return false;
+    }
+
+    private static void collect(UiNode node, List<UiNode> out) {
+        if (node == null) return;
+        out.add(node);
+        for (UiNode child : node.children) {
+            collect(child, out);
+        }
+    }
+
+    private static boolean containsIgnoreCase(String value, String needle) {
+        String normalized = UiNodeIndex.normalize(value);
+        return normalized != null && normalized.contains(needle);
+    }
+
+    private static Step[] parse(String selector) {
+        List<Step> steps = new ArrayList<>();
+        Step step = new Step();
+        StringBuilder token = new StringBuilder();
+        int i = 0;
+        int length = selector.length();
+
+        while (i <= length) {
+            char c = i < length ? selector.charAt(i) : '\0';
+            if (c == '\'' || c == '"') {
+                int end = selector.indexOf(c, i + 1);
+                if (end < 0) throw new IllegalArgumentException("unterminated quote in selector");
+                token.append(selector, i, end + 1);
+                i = end + 1;
+                continue;
+            }
+            if (c == '&' || c == '>' || c == '\0') {
+                addPredicate(step, token.toString().trim());
+                token.setLength(0);
+                if (c == '>') {
+                    boolean descendant = i + 1 < length && selector.charAt(i + 1) == '>';
+                    steps.add(step);
+                    step = new Step();
+                    step.directChild = !descendant;
+                    if (descendant) i++;
+                }
+                i++;
+                continue;
+            }
+            token.append(c);
+            i++;
+        }
+        steps.add(step);
+
+        for (Step s : steps) {
+            if (s.viewId == null && s.text == null && s.textContains == null && s.description == null
+                    && s.descriptionContains == null && s.className == null && s.requiredFlags == 0) {
+                throw new IllegalArgumentException("empty step in selector '" + selector + "'");
+            }
+        }
+        return steps.toArray(new Step[0]);
+    }
+
+    private static void addPredicate(Step step, String predicate) {
+        if (predicate.isEmpty()) return;
+
+        int eq = predicate.indexOf('=');
+        if (eq < 0) {
+            step.requiredFlags |= flagFor(predicate);
+            return;
+        }
+
+        String key = predicate.substring(0, eq).trim();
+        String value = unquote(predicate.substring(eq + 1).trim());
+        switch (key) {
+            case "id":
+                step.viewId = value;
+                break;
+            case "text":
+                step.text = UiNodeIndex.normalize(value);
+                break;
+            case "text~":
+                step.textContains = UiNodeIndex.normalize(value);
+                break;
+            case "desc":
+                step.description = UiNodeIndex.normalize(value);
+                break;
+            case "desc~":
+                step.descriptionContains = UiNodeIndex.normalize(value);
+                break;
+            case "class":
+                step.className = value;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown selector key '" + key + "'");
+        }
+    }
+
+    private static int flagFor(String name) {
+        switch (name) {
+            case "clickable":
+                return UiNode.FLAG_CLICKABLE;
+            case "editable":
+                return UiNode.FLAG_EDITABLE;
+            case "scrollable":
+                return UiNode.FLAG_SCROLLABLE;
+            case "checkable":
+                return UiNode.FLAG_CHECKABLE;
+            case "checked":
+                return UiNode.FLAG_CHECKED;
+            case "enabled":
+                return UiNode.FLAG_ENABLED;
+            case "visible":
+                return UiNode.FLAG_VISIBLE;
+            default:
+                throw new IllegalArgumentException("unknown selector flag '" + name + "'");
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2) {
+            char first = value.charAt(0);
+            if ((first == '\'' || first == '"') && value.charAt(value.length() - 1) == first) {
+                return value.substring(1, value.length() - 1);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,451 @@
+package com.quantumai.os;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Serializes the UI index into a compact columnar snapshot for the AI backend.
+//
+// Invisible and zero-size subtrees are dropped, and decorative nodes (no text,
+// description or action) are flattened so their children hang off the nearest
+// kept ancestor. A subtree identical to an earlier one (repeated list rows) is
+// kept as a single row whose ref points at the first copy. Rows stop being added
+// once the byte budget is reached. A delta carries only rows that are new or
+// changed since the previous snapshot plus the identities that disappeared.
+//
+// Layout (big-endian), written into one reused direct buffer:
+//   header  [int magic "QSNP"][short version][short flags][long version][long baseVersion]
+//           [int rows][int removed][int strings]
+//   columns long identity[rows], long parent[rows], long ref[rows],
+//           short flags[rows], short left/top/right/bottom[rows],
+//           int class[rows], int viewId[rows], int text[rows], int description[rows]
+//   removed long identity[removed]
+//   strings [unsigned short byteLength][UTF-8 bytes] x strings
+// Identities are stable across snapshots (parent, class, view id and position
+// among kept siblings); parent and ref are identities, 0 for none; string ids are
+// indexes into the string table, -1 for none. Strings longer than
+// MAX_STRING_CHARS are cut to that many chars, never inside a surrogate pair.
+public class ScreenSnapshotWriter {
+
+    public static final int MAGIC = 0x51534E50;
+    public static final short VERSION = 1;
+    public static final short FLAG_TRUNCATED = 1;
+    public static final short FLAG_DELTA = 2;
+    public static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 8 + 4 + 4 + 4;
+    public static final int ROW_SIZE = 8 * 3 + 2 * 5 + 4 * 4;
+    // At most 3 UTF-8 bytes per char, so a cut string always fits the 16-bit length
+    public static final int MAX_STRING_CHARS = 4096;
+
+    private static final int MAX_DEPTH = 128;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Row columns, grown on demand and reused between snapshots
+    private int capacity = 256;
+    private long[] identity = new long[capacity];
+    private long[] parent = new long[capacity];
+    private long[] ref = new long[capacity];
+    private short[] flags = new short[capacity];
+    private short[] left = new short[capacity];
+    private short[] top = new short[capacity];
+    private short[] right = new short[capacity];
+    private short[] bottom = new short[capacity];
+    private String[] className = new String[capacity];
+    private String[] viewId = new String[capacity];
+    private String[] text = new String[capacity];
+    private String[] description = new String[capacity];
+    private boolean[] include = new boolean[capacity];
+    private int rows;
+
+    private final int[] ordinals = new int[MAX_DEPTH + 1];
+    private final LongMap dedupe = new LongMap();
+    private LongMap previous = new LongMap();
+    private LongMap current = new LongMap();
+    private final StringTable strings = new StringTable();
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private long version;
+    private long estimatedBytes;
+    private int budget;
+    private boolean truncated;
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public boolean wasTruncated() {
+        return truncated;
+    }
+
+    // Returns the reused buffer positioned at the start of the snapshot; it stays
+    // valid until the next call. A delta is produced only if sinceVersion is the
+    // version of the previous snapshot, otherwise the result is a full snapshot.
+    public ByteBuffer write(UiNode root, int budgetBytes, long sinceVersion) {
+        rows = 0;
+        truncated = false;
+        budget = budgetBytes > 0 ? budgetBytes : Integer.MAX_VALUE;
+        estimatedBytes = HEADER_SIZE;
+        dedupe.clear();
+        ordinals[0] = 0;
+        if (root != null) visit(root, 0, 0);
+
+        boolean delta = sinceVersion > 0 && sinceVersion == version;
+        long baseVersion = version;
+        version++;
+
+        // Content hash per row, keyed by identity, for the next delta
+        current.clear();
+        int included = 0;
+        for (int i = 0; i < rows; i++) {
+            long hash = rowHash(i);
+            current.put(identity[i], hash);
+            include[i] = !delta || previous.get(identity[i], 0) != hash;
+            if (include[i]) included++;
+        }
+        int removed = 0;
+        if (delta) {
+            for (int i = 0; i < previous.keys.length; i++) {
+                long key = previous.keys[i];
+                if (key != 0 && !current.contains(key)) removed++;
+            }
+        }
+
+        strings.clear();
+        for (int i = 0; i < rows; i++) {
+            if (!include[i]) continue;
+            strings.intern(className[i]);
+            strings.intern(viewId[i]);
+            strings.intern(text[i]);
+            strings.intern(description[i]);
+        }
+
+        ensureBuffer(HEADER_SIZE + (long) included * ROW_SIZE + removed * 8L + strings.maxEncodedBytes());
+        ByteBuffer out = buffer;
+        out.clear();
+        out.position(HEADER_SIZE);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putLong(identity[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putLong(parent[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putLong(ref[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putShort(flags[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putShort(left[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putShort(top[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putShort(right[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putShort(bottom[i]);
+        for (int i = 0; i < rows; i++) if (include[i]) out.putInt(strings.id(className[i]));
+        for (int i = 0; i < rows; i++) if (include[i]) out.putInt(strings.id(viewId[i]));
+        for (int i = 0; i < rows; i++) if (include[i]) out.putInt(strings.id(text[i]));
+        for (int i = 0; i < rows; i++) if (include[i]) out.putInt(strings.id(description[i]));
+        if (delta) {
+            for (int i = 0; i < previous.keys.length; i++) {
+                long key = previous.keys[i];
+                if (key != 0 && !current.contains(key)) out.putLong(key);
+            }
+        }
+        strings.writeTo(out);
+
+        out.putInt(0, MAGIC);
+        out.putShort(4, VERSION);
+        out.putShort(6, (short) ((truncated ? FLAG_TRUNCATED : 0) | (delta ? FLAG_DELTA : 0)));
+        out.putLong(8, version);
+        out.putLong(16, delta ? baseVersion : 0);
+        out.putInt(24, included);
+        out.putInt(28, removed);
+        out.putInt(32, strings.size());
+        out.flip();
+
+        LongMap swap = previous;
+        previous = current;
+        current = swap;
+        return out;
+    }
+
+    // Returns this node's contribution to its kept parent's subtree hash
+    private long visit(UiNode node, long parentId, int depth) {
+        if (truncated || depth >= MAX_DEPTH) return 0;
+        if (!node.has(UiNode.FLAG_VISIBLE) || node.right <= node.left || node.bottom <= node.top) return 0;
+
+        if (isDecorative(node)) {
+            long hash = 0;
+            for (int i = 0; i < node.children.size(); i++) {
+                hash = mix(hash, visit(node.children.get(i), parentId, depth));
+            }
+            return hash;
+        }
+
+        int ordinal = ordinals[depth]++;
+        long id = mix(mix(mix(mix(FNV_OFFSET, parentId), hash(node.className)), hash(node.viewId)), ordinal) | 1;
+        int row = addRow(node, id, parentId);
+        if (estimatedBytes >= budget) truncated = true;
+
+        ordinals[depth + 1] = 0;
+        int firstChildRow = rows;
+        long childHash = 0;
+        for (int i = 0; i < node.children.size(); i++) {
+            childHash = mix(childHash, visit(node.children.get(i), id, depth + 1));
+        }
+
+        // Position is left out so identical list rows hash the same
+        long subtree = mix(mix(mix(mix(mix(mix(FNV_OFFSET, hash(node.className)), hash(node.viewId)),
+                hash(node.text)), hash(node.description)), node.flags),
+                ((long) (node.right - node.left) << 32) | (node.bottom - node.top));
+        subtree = mix(subtree, childHash);
+        if (rows > firstChildRow) {
+            int first = (int) dedupe.get(subtree, -1);
+            if (first >= 0) {
+                // Keep this row for its own position, drop its copy of the subtree
+                for (int i = firstChildRow; i < rows; i++) estimatedBytes -= rowBytes(i);
+                rows = firstChildRow;
+                ref[row] = identity[first];
+            } else {
+                dedupe.put(subtree, row);
+            }
+        }
+        return subtree;
+    }
+
+    private static boolean isDecorative(UiNode node) {
+        int actions = UiNode.FLAG_CLICKABLE | UiNode.FLAG_LONG_CLICKABLE | UiNode.FLAG_EDITABLE
+                | UiNode.FLAG_SCROLLABLE | UiNode.FLAG_CHECKABLE;
+        return (node.flags & actions) == 0 && isBlank(node.text) && isBlank(node.description);
+    }
+
+    private int addRow(UiNode node, long id, long parentId) {
+        if (rows == capacity) grow();
+        int i = rows++;
+        identity[i] = id;
+        parent[i] = parentId;
+        ref[i] = 0;
+        flags[i] = (short) node.flags;
+        left[i] = clamp(node.left);
+        top[i] = clamp(node.top);
+        right[i] = clamp(node.right);
+        bottom[i] = clamp(node.bottom);
+        className[i] = node.className;
+        viewId[i] = node.viewId;
+        text[i] = node.text;
+        description[i] = node.description;
+        estimatedBytes += rowBytes(i);
+        return i;
+    }
+
+    private long rowBytes(int i) {
+        return ROW_SIZE + length(className[i]) + length(viewId[i]) + length(text[i]) + length(description[i]);
+    }
+
+    private long rowHash(int i) {
+        long hash = mix(mix(mix(FNV_OFFSET, identity[i]), parent[i]), ref[i]);
+        hash = mix(hash, flags[i]);
+        hash = mix(hash, ((long) left[i] << 48) | ((long) (top[i] & 0xffff) << 32)
+                | ((right[i] & 0xffff) << 16) | (bottom[i] & 0xffff));
+        hash = mix(hash, hash(text[i]));
+        return mix(hash, hash(description[i]));
+    }
+
+    private void grow() {
+        capacity *= 2;
+        identity = Arrays.copyOf(identity, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        ref = Arrays.copyOf(ref, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        left = Arrays.copyOf(left, capacity);
+        top = Arrays.copyOf(top, capacity);
+        right = Arrays.copyOf(right, capacity);
+        bottom = Arrays.copyOf(bottom, capacity);
+        className = Arrays.copyOf(className, capacity);
+        viewId = Arrays.copyOf(viewId, capacity);
+        text = Arrays.copyOf(text, capacity);
+        description = Arrays.copyOf(description, capacity);
+        include = Arrays.copyOf(include, capacity);
+    }
+
+    private void ensureBuffer(long bytes) {
+        if (bytes <= buffer.capacity()) return;
+        buffer = ByteBuffer.allocateDirect((int) Math.max(bytes, buffer.capacity() * 2L));
+    }
+
+    private static short clamp(int value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    private static int length(String value) {
+        return value != null ? Math.min(value.length(), MAX_STRING_CHARS) : 0;
+    }
+
+    // value cut to MAX_STRING_CHARS, backing off one char rather than splitting a surrogate pair
+    public static String truncate(String value) {
+        if (value == null || value.length() <= MAX_STRING_CHARS) return value;
+        int end = MAX_STRING_CHARS;
+        if (Character.isHighSurrogate(value.charAt(end - 1))) end--;
+        return value.substring(0, end);
+    }
+
+    private static boolean isBlank(String value) {
+        if (value == null) return true;
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isWhitespace(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= FNV_PRIME;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static long hash(String value) {
+        if (value == null) return 0;
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // Open-addressed long -> long map; key 0 marks an empty slot
+    private static final class LongMap {
+        long[] keys = new long[1024];
+        long[] values = new long[1024];
+        int size;
+
+        void clear() {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+
+        void put(long key, long value) {
+            if ((size + 1) * 2 > keys.length) resize();
+            int slot = slot(key, keys);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        long get(long key, long missing) {
+            int slot = slot(key, keys);
+            return keys[slot] == key ? values[slot] : missing;
+        }
+
+        boolean contains(long key) {
+            return keys[slot(key, keys)] == key;
+        }
+
+        private static int slot(long key, long[] table) {
+            int mask = table.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+            while (table[slot] != 0 && table[slot] != key) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = slot(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Per-snapshot string table; slots are cleared, never reallocated, between snapshots
+    private static final class StringTable {
+        String[] slots = new String[1024];
+        int[] ids = new int[1024];
+        String[] ordered = new String[512];
+        int size;
+
+        void clear() {
+            Arrays.fill(slots, null);
+            Arrays.fill(ordered, 0, size, null);
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void intern(String value) {
+            if (value == null) return;
+            if ((size + 1) * 2 > slots.length) resize();
+            int slot = slot(value, slots);
+            if (slots[slot] != null) return;
+            slots[slot] = value;
+            ids[slot] = size;
+            if (size == ordered.length) ordered = Arrays.copyOf(ordered, size * 2);
+            ordered[size++] = value;
+        }
+
+        int id(String value) {
+            if (value == null) return -1;
+            int slot = slot(value, slots);
+            return slots[slot] != null ? ids[slot] : -1;
+        }
+
+        long maxEncodedBytes() {
+            long bytes = 0;
+            for (int i = 0; i < size; i++) bytes += 2 + length(ordered[i]) * 3L;
+            return bytes;
+        }
+
+        // UTF-8 without going through String.getBytes
+        void writeTo(ByteBuffer out) {
+            for (int i = 0; i < size; i++) {
+                String value = ordered[i];
+                int lengthAt = out.position();
+                out.putShort((short) 0);
+                int start = out.position();
+                int end = truncate(value).length();
+                for (int c = 0; c < end; c++) {
+                    char ch = value.charAt(c);
+                    if (ch < 0x80) {
+                        out.put((byte) ch);
+                    } else if (ch < 0x800) {
+                        out.put((byte) (0xC0 | (ch >> 6)));
+                        out.put((byte) (0x80 | (ch & 0x3F)));
+                    } else if (Character.isHighSurrogate(ch) && c + 1 < end
+                            && Character.isLowSurrogate(value.charAt(c + 1))) {
+                        int cp = Character.toCodePoint(ch, value.charAt(++c));
+                        out.put((byte) (0xF0 | (cp >> 18)));
+                        out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                        out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                        out.put((byte) (0x80 | (cp & 0x3F)));
+                    } else {
+                        out.put((byte) (0xE0 | (ch >> 12)));
+                        out.put((byte) (0x80 | ((ch >> 6) & 0x3F)));
+                        out.put((byte) (0x80 | (ch & 0x3F)));
+                    }
+                }
+                out.putShort(lengthAt, (short) (out.position() - start));
+            }
+        }
+
+        private static int slot(String value, String[] table) {
+            int mask = table.length - 1;
+            int slot = (value.hashCode() * 0x9E3779B9) & mask;
+            while (table[slot] != null && !table[slot].equals(value)) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void resize() {
+            String[] oldSlots = slots;
+            int[] oldIds = ids;
+            slots = new String[oldSlots.length * 2];
+            ids = new int[oldSlots.length * 2];
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] == null) continue;
+                int slot = slot(oldSlots[i], slots);
+                slots[slot] = oldSlots[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+}
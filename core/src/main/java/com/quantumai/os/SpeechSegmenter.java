@@ -0,0 +1,117 @@
+package com.quantumai.os;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Cuts a continuous PCM stream into speech segments. Captured frames go into a
+// preallocated direct ByteBuffer ring; each one is run through the VAD, and only
+// frames inside speech reach the sink. When speech starts, the frames just before
+// it (the VAD's onset run plus a pre-roll) are replayed from the ring first so the
+// start of the first word isn't clipped.
+//
+// The producer asks for nextSlot(), fills it (AudioRecord.read writes straight into
+// it) and calls commit(). Nothing is allocated after construction.
+public class SpeechSegmenter {
+
+    public interface Sink {
+        void onSpeechStart();
+
+        // frame holds one frame between position and limit, valid only during the call
+        void onSpeechFrame(ByteBuffer frame);
+
+        void onSpeechEnd();
+    }
+
+    private final VoiceActivityDetector vad = new VoiceActivityDetector();
+    private final Sink sink;
+    private final ByteBuffer ring;
+    // One fixed view per ring slot, so handing out a frame doesn't allocate
+    private final ByteBuffer[] slots;
+    private final int preRollFrames;
+    private final int maxSegmentFrames;
+
+    private long frameCount;
+    private int segmentFrames;
+
+    public SpeechSegmenter(int preRollMs, int maxSegmentMs, Sink sink) {
+        this.sink = sink;
+        int frameMs = VoiceActivityDetector.FRAME_SAMPLES * 1000 / VoiceActivityDetector.SAMPLE_RATE;
+        preRollFrames = Math.max(0, preRollMs / frameMs);
+        maxSegmentFrames = Math.max(1, maxSegmentMs / frameMs);
+
+        int ringFrames = preRollFrames + vad.getOnsetFrames() + 1;
+        ring = ByteBuffer.allocateDirect(ringFrames * VoiceActivityDetector.FRAME_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        slots = new ByteBuffer[ringFrames];
+        for (int i = 0; i < ringFrames; i++) {
+            ring.limit((i + 1) * VoiceActivityDetector.FRAME_BYTES);
+            ring.position(i * VoiceActivityDetector.FRAME_BYTES);
+            slots[i] = ring.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ring.clear();
+    }
+
+    public VoiceActivityDetector getDetector() {
+        return vad;
+    }
+
+    // Buffer to fill with the next FRAME_BYTES of PCM, starting at position 0
+    public ByteBuffer nextSlot() {
+        ByteBuffer slot = slots[(int) (frameCount % slots.length)];
+        slot.clear();
+        return slot;
+    }
+
+    // Takes the frame written into nextSlot(); returns the VAD event it caused
+    public int commit() {
+        ByteBuffer slot = slots[(int) (frameCount % slots.length)];
+        int event = vad.process(slot, 0);
+        frameCount++;
+
+        switch (event) {
+            case VoiceActivityDetector.EVENT_SPEECH_START: {
+                sink.onSpeechStart();
+                // Replay the onset run and pre-roll, oldest first, ending with this frame
+                int history = (int) Math.min(frameCount, slots.length);
+                for (long f = frameCount - history; f < frameCount; f++) {
+                    emit(slots[(int) (f % slots.length)]);
+                }
+                segmentFrames = history;
+                break;
+            }
+
+            case VoiceActivityDetector.EVENT_SPEECH_END:
+                // The hangover frames were already sent as part of the segment
+                emit(slot);
+                sink.onSpeechEnd();
+                segmentFrames = 0;
+                break;
+
+            default:
+                if (vad.isSpeaking()) {
+                    emit(slot);
+                    if (++segmentFrames >= maxSegmentFrames) {
+                        // Keep uploads bounded; a new segment starts if speech continues
+                        sink.onSpeechEnd();
+                        vad.endSpeech();
+                        segmentFrames = 0;
+                        return VoiceActivityDetector.EVENT_SPEECH_END;
+                    }
+                }
+                break;
+        }
+        return event;
+    }
+
+    // Closes an open segment, e.g. when capture stops mid-sentence
+    public void finish() {
+        if (vad.isSpeaking()) sink.onSpeechEnd();
+        vad.reset();
+        segmentFrames = 0;
+    }
+
+    private void emit(ByteBuffer slot) {
+        slot.clear();
+        sink.onSpeechFrame(slot);
+    }
+}
@@ -0,0 +1,164 @@
+package com.quantumai.os;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams speech segments to the local server, one chunked POST per segment of
+// raw 16 kHz mono s16le PCM. The capture thread only copies each frame into a
+// pooled chunk and queues it; a single worker thread does the HTTP. If the worker
+// falls behind and the pool runs dry, frames are dropped and counted rather than
+// stalling capture.
+public class SpeechUploader implements SpeechSegmenter.Sink {
+
+    public static final String DEFAULT_URL = "http://127.0.0.1:5000/voice/segment";
+
+    private static final int POOL_FRAMES = 256;
+
+    private static final class Chunk {
+        final byte[] data = new byte[VoiceActivityDetector.FRAME_BYTES];
+    }
+
+    // Markers travel through the same queue as audio so ordering is preserved
+    private static final Chunk START = new Chunk();
+    private static final Chunk END = new Chunk();
+    private static final Chunk STOP = new Chunk();
+
+    public interface Listener {
+        // Called on the worker thread once the server has the whole segment
+        void onSegmentSent(boolean success, String message);
+    }
+
+    private final URL url;
+    private final Listener listener;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(POOL_FRAMES + 3);
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(POOL_FRAMES);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+    // Capture side: a segment whose start marker couldn't be queued is skipped whole
+    private boolean segmentOpen;
+
+    public SpeechUploader(String url, Listener listener) throws IOException {
+        this.url = new URL(url);
+        this.listener = listener;
+        for (int i = 0; i < POOL_FRAMES; i++) free.add(new Chunk());
+        worker = new Thread(this::uploadLoop, "QuantumAI-SpeechUploader");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void onSpeechStart() {
+        segmentOpen = queue.offer(START);
+    }
+
+    @Override
+    public void onSpeechFrame(ByteBuffer frame) {
+        if (!segmentOpen) return;
+        Chunk chunk = free.poll();
+        if (chunk == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+        frame.duplicate().get(chunk.data, 0, Math.min(frame.remaining(), chunk.data.length));
+        if (!queue.offer(chunk)) {
+            free.offer(chunk);
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onSpeechEnd() {
+        // If the end marker doesn't fit, the next start closes the segment instead
+        if (segmentOpen) queue.offer(END);
+        segmentOpen = false;
+    }
+
+    public void close() {
+        queue.offer(STOP);
+        worker.interrupt();
+    }
+
+    private void uploadLoop() {
+        HttpURLConnection connection = null;
+        OutputStream out = null;
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == STOP) break;
+
+                if (chunk == START) {
+                    if (out != null) finishSegment(connection, out);
+                    try {
+                        connection = (HttpURLConnection) url.openConnection();
+                        connection.setRequestMethod("POST");
+                        connection.setDoOutput(true);
+                        connection.setChunkedStreamingMode(VoiceActivityDetector.FRAME_BYTES * 25);
+                        connection.setRequestProperty("Content-Type", "application/octet-stream");
+                        connection.setRequestProperty("X-Audio-Format", "s16le");
+                        connection.setRequestProperty("X-Sample-Rate", String.valueOf(VoiceActivityDetector.SAMPLE_RATE));
+                        out = connection.getOutputStream();
+                    } catch (IOException e) {
+                        listener.onSegmentSent(false, "Error: " + e.getMessage());
+                        disconnect(connection);
+                        connection = null;
+                        out = null;
+                    }
+                } else if (chunk == END) {
+                    if (out != null) finishSegment(connection, out);
+                    connection = null;
+                    out = null;
+                } else {
+                    try {
+                        if (out != null) out.write(chunk.data);
+                    } catch (IOException e) {
+                        listener.onSegmentSent(false, "Error: " + e.getMessage());
+                        disconnect(connection);
+                        connection = null;
+                        out = null;
+                    } finally {
+                        free.offer(chunk);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closing
+        } finally {
+            disconnect(connection);
+        }
+    }
+
+    private void finishSegment(HttpURLConnection connection, OutputStream out) {
+        try {
+            out.close();
+            int code = connection.getResponseCode();
+            // Drain so the connection can be reused
+            try (InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    byte[] discard = new byte[512];
+                    while (in.read(discard) != -1) {
+                        // Response body isn't used
+                    }
+                }
+            }
+            listener.onSegmentSent(code < 400, "HTTP " + code);
+        } catch (IOException e) {
+            listener.onSegmentSent(false, "Error: " + e.getMessage());
+            disconnect(connection);
+        }
+    }
+
+    private static void disconnect(HttpURLConnection connection) {
+        if (connection != null) connection.disconnect();
+    }
+}
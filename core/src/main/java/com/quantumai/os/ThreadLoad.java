@@ -0,0 +1,73 @@
+package com.quantumai.os;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Load of one message-loop thread: how much of the time it spends running tasks,
+// how long the longest ones take, how many overran a frame, and how deep its
+// hand-off queue gets. The owning thread reports task boundaries; depth is
+// updated by producers; any thread may read stats().
+public class ThreadLoad {
+
+    private final String name;
+    private final long budgetNanos;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    // Single writer (the owning thread), so volatile is enough for readers
+    private volatile long tasks;
+    private volatile long busyNanos;
+    private volatile long longestNanos;
+    private volatile long overBudget;
+    private long taskStart;
+
+    // Reader side: utilization is reported over the time since the previous stats()
+    private long windowStart = System.nanoTime();
+    private long windowBusy;
+
+    // Tasks longer than budgetNanos (typically one frame) are counted as overruns
+    public ThreadLoad(String name, long budgetNanos) {
+        this.name = name;
+        this.budgetNanos = budgetNanos;
+    }
+
+    public void enqueued() {
+        int current = depth.incrementAndGet();
+        int max = maxDepth.get();
+        while (current > max && !maxDepth.compareAndSet(max, current)) {
+            max = maxDepth.get();
+        }
+    }
+
+    public void dequeued() {
+        depth.decrementAndGet();
+    }
+
+    // Owning thread only
+    public void taskStarted() {
+        taskStart = System.nanoTime();
+    }
+
+    // Owning thread only
+    public void taskFinished() {
+        if (taskStart == 0) return;
+        long elapsed = System.nanoTime() - taskStart;
+        taskStart = 0;
+        tasks++;
+        busyNanos += elapsed;
+        if (elapsed > longestNanos) longestNanos = elapsed;
+        if (elapsed > budgetNanos) overBudget++;
+    }
+
+    public synchronized String stats() {
+        long now = System.nanoTime();
+        long busy = busyNanos;
+        long window = Math.max(1, now - windowStart);
+        float utilization = (busy - windowBusy) * 100f / window;
+        windowStart = now;
+        windowBusy = busy;
+        return name + ": busy=" + Math.round(utilization * 10) / 10f + "% tasks=" + tasks
+                + " longestMs=" + longestNanos / 100_000 / 10f + " overBudget=" + overBudget
+                + " depth=" + depth.get() + " maxDepth=" + maxDepth.get();
+    }
+}
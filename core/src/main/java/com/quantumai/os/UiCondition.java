@@ -0,0 +1,78 @@
+package com.quantumai.os;
+
+// A UI state the backend can wait for instead of polling:
+//
+//   node:<selector>     a visible node matches the selector
+//   gone:<selector>     no visible node matches the selector
+//   package:<name>      the active window belongs to the package
+//   idle:<ms>           no window or content change for that long
+public class UiCondition {
+
+    public static final int KIND_NODE = 0;
+    public static final int KIND_GONE = 1;
+    public static final int KIND_PACKAGE = 2;
+    public static final int KIND_IDLE = 3;
+
+    public final int kind;
+    public final String source;
+    public final NodeSelector selector;
+    public final String packageName;
+    public final long idleMillis;
+
+    private UiCondition(int kind, String source, NodeSelector selector, String packageName, long idleMillis) {
+        this.kind = kind;
+        this.source = source;
+        this.selector = selector;
+        this.packageName = packageName;
+        this.idleMillis = idleMillis;
+    }
+
+    public static UiCondition parse(String condition) {
+        int colon = condition != null ? condition.indexOf(':') : -1;
+        if (colon < 0) throw new IllegalArgumentException("expected kind:argument");
+        String kind = condition.substring(0, colon).trim();
+        String argument = condition.substring(colon + 1).trim();
+
+        switch (kind) {
+            case "node":
+                return new UiCondition(KIND_NODE, condition, NodeSelector.compile(argument), null, 0);
+            case "gone":
+                return new UiCondition(KIND_GONE, condition, NodeSelector.compile(argument), null, 0);
+            case "package":
+                return new UiCondition(KIND_PACKAGE, condition, null, argument, 0);
+            case "idle": {
+                long millis = Long.parseLong(argument);
+                if (millis <= 0) throw new IllegalArgumentException("idle needs a positive duration");
+                return new UiCondition(KIND_IDLE, condition, null, null, millis);
+            }
+            default:
+                throw new IllegalArgumentException("unknown condition '" + kind + "'");
+        }
+    }
+
+    // Idle conditions are time-based and evaluated by the waiter, never here
+    public boolean isSatisfied(UiNodeIndex index, String windowPackage) {
+        switch (kind) {
+            case KIND_NODE:
+                return visibleMatch(index) != null;
+            case KIND_GONE:
+                return visibleMatch(index) == null;
+            case KIND_PACKAGE:
+                return packageName.equals(windowPackage);
+            default:
+                return false;
+        }
+    }
+
+    public UiNode visibleMatch(UiNodeIndex index) {
+        for (UiNode node : selector.find(index)) {
+            if (node.has(UiNode.FLAG_VISIBLE)) return node;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
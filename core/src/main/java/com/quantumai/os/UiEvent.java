@@ -0,0 +1,30 @@
+package com.quantumai.os;
+
+// Pooled, platform-free copy of the parts of an AccessibilityEvent that consumers use
+public class UiEvent {
+
+    public int type;
+    public long time;
+    public String packageName;
+    public String className;
+    public int windowId;
+    public int contentChangeTypes;
+    // Source node (AccessibilityNodeInfo on device); null means "the whole window"
+    public Object source;
+
+    // When a coalesced event becomes due, in the pipeline's clock
+    long dueAt;
+    long firstSeenAt;
+
+    void clear() {
+        type = 0;
+        time = 0;
+        packageName = null;
+        className = null;
+        windowId = 0;
+        contentChangeTypes = 0;
+        source = null;
+        dueAt = 0;
+        firstSeenAt = 0;
+    }
+}
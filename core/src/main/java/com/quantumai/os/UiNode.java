@@ -0,0 +1,72 @@
+package com.quantumai.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Platform-free snapshot of one node in the active window
+public class UiNode {
+
+    public static final int FLAG_CLICKABLE = 1;
+    public static final int FLAG_LONG_CLICKABLE = 1 << 1;
+    public static final int FLAG_EDITABLE = 1 << 2;
+    public static final int FLAG_SCROLLABLE = 1 << 3;
+    public static final int FLAG_CHECKABLE = 1 << 4;
+    public static final int FLAG_CHECKED = 1 << 5;
+    public static final int FLAG_FOCUSABLE = 1 << 6;
+    public static final int FLAG_ENABLED = 1 << 7;
+    public static final int FLAG_VISIBLE = 1 << 8;
+    public static final int FLAG_SELECTED = 1 << 9;
+
+    public String viewId;
+    public String text;
+    public String description;
+    public String className;
+    public String packageName;
+    public int left, top, right, bottom;
+    public int flags;
+
+    public UiNode parent;
+    public final List<UiNode> children = new ArrayList<>();
+
+    // Platform node this snapshot was taken from (AccessibilityNodeInfo on device)
+    public Object handle;
+
+    public boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= left && x < right && y >= top && y < bottom;
+    }
+
+    public int area() {
+        return Math.max(0, right - left) * Math.max(0, bottom - top);
+    }
+
+    public int centerX() {
+        return (left + right) / 2;
+    }
+
+    public int centerY() {
+        return (top + bottom) / 2;
+    }
+
+    public void addChild(UiNode child) {
+        child.parent = this;
+        children.add(child);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        String simpleClass = className;
+        if (simpleClass != null) simpleClass = simpleClass.substring(simpleClass.lastIndexOf('.') + 1);
+        builder.append(simpleClass);
+        if (viewId != null) builder.append(" #").append(viewId);
+        if (text != null) builder.append(" '").append(text).append('\'');
+        if (description != null) builder.append(" (").append(description).append(')');
+        builder.append(" [").append(left).append(',').append(top).append(',')
+                .append(right).append(',').append(bottom).append(']');
+        return builder.toString();
+    }
+}
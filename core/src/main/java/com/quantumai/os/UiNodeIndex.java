@@ -0,0 +1,259 @@
+package com.quantumai.os;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Live index over the active window's nodes. Hash lookups by view id, text and
+// content description, plus a uniform grid for spatial lookups. Subtrees can be
+// swapped in place so content-changed deltas don't require a full rebuild.
+public class UiNodeIndex {
+
+    private static final int CELL_SIZE = 128;
+    // Nodes spanning more cells than this (full-screen containers) skip the grid
+    private static final int MAX_GRID_CELLS = 32;
+
+    private final Map<String, List<UiNode>> byViewId = new HashMap<>();
+    private final Map<String, List<UiNode>> byText = new HashMap<>();
+    private final Map<String, List<UiNode>> byDescription = new HashMap<>();
+    private final Map<Long, List<UiNode>> grid = new HashMap<>();
+    private final List<UiNode> oversized = new ArrayList<>();
+    private final Map<Object, UiNode> byHandle = new HashMap<>();
+
+    private UiNode root;
+    private int size;
+    private long version;
+
+    public UiNode getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Bumped on every change so readers can tell whether their view is stale
+    public long getVersion() {
+        return version;
+    }
+
+    public void clear() {
+        byViewId.clear();
+        byText.clear();
+        byDescription.clear();
+        grid.clear();
+        oversized.clear();
+        byHandle.clear();
+        root = null;
+        size = 0;
+        version++;
+    }
+
+    public void rebuild(UiNode newRoot) {
+        clear();
+        root = newRoot;
+        if (newRoot != null) indexSubtree(newRoot);
+    }
+
+    public boolean contains(Object handle) {
+        return byHandle.containsKey(handle);
+    }
+
+    public UiNode get(Object handle) {
+        return byHandle.get(handle);
+    }
+
+    // Swaps the subtree rooted at handle for a freshly captured one
+    public boolean replaceSubtree(Object handle, UiNode replacement) {
+        UiNode old = byHandle.get(handle);
+        if (old == null) return false;
+
+        unindexSubtree(old);
+        UiNode parent = old.parent;
+        if (parent == null) {
+            root = replacement;
+            replacement.parent = null;
+        } else {
+            parent.children.set(parent.children.indexOf(old), replacement);
+            replacement.parent = parent;
+        }
+        indexSubtree(replacement);
+        version++;
+        return true;
+    }
+
+    // Refreshes a single node's own properties (text/description changes) in place
+    public boolean updateNode(Object handle, UiNode fresh) {
+        UiNode node = byHandle.get(handle);
+        if (node == null) return false;
+
+        unindexNode(node);
+        node.viewId = fresh.viewId;
+        node.text = fresh.text;
+        node.description = fresh.description;
+        node.className = fresh.className;
+        node.packageName = fresh.packageName;
+        node.left = fresh.left;
+        node.top = fresh.top;
+        node.right = fresh.right;
+        node.bottom = fresh.bottom;
+        node.flags = fresh.flags;
+        node.handle = fresh.handle;
+        indexNode(node);
+        version++;
+        return true;
+    }
+
+    public List<UiNode> findByViewId(String viewId) {
+        return lookup(byViewId, viewId);
+    }
+
+    // Text and description keys are trimmed and case-insensitive
+    public List<UiNode> findByText(String text) {
+        return lookup(byText, normalize(text));
+    }
+
+    public List<UiNode> findByDescription(String description) {
+        return lookup(byDescription, normalize(description));
+    }
+
+    // Smallest node containing the point, i.e. the one a tap there would most likely hit
+    public UiNode findAt(int x, int y) {
+        UiNode best = null;
+        List<UiNode> cell = grid.get(cellKey(Math.floorDiv(x, CELL_SIZE), Math.floorDiv(y, CELL_SIZE)));
+        if (cell != null) best = smallestContaining(cell, x, y, null);
+        return smallestContaining(oversized, x, y, best);
+    }
+
+    public List<UiNode> findIntersecting(int left, int top, int right, int bottom) {
+        List<UiNode> result = new ArrayList<>();
+        int minX = Math.floorDiv(left, CELL_SIZE);
+        int maxX = Math.floorDiv(right - 1, CELL_SIZE);
+        int minY = Math.floorDiv(top, CELL_SIZE);
+        int maxY = Math.floorDiv(bottom - 1, CELL_SIZE);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                List<UiNode> cell = grid.get(cellKey(cx, cy));
+                if (cell == null) continue;
+                for (UiNode node : cell) {
+                    if (intersects(node, left, top, right, bottom) && !result.contains(node)) result.add(node);
+                }
+            }
+        }
+        for (UiNode node : oversized) {
+            if (intersects(node, left, top, right, bottom)) result.add(node);
+        }
+        return result;
+    }
+
+    private void indexSubtree(UiNode node) {
+        indexNode(node);
+        for (UiNode child : node.children) {
+            child.parent = node;
+            indexSubtree(child);
+        }
+    }
+
+    private void unindexSubtree(UiNode node) {
+        unindexNode(node);
+        for (UiNode child : node.children) {
+            unindexSubtree(child);
+        }
+    }
+
+    private void indexNode(UiNode node) {
+        if (node.handle != null) byHandle.put(node.handle, node);
+        add(byViewId, node.viewId, node);
+        add(byText, normalize(node.text), node);
+        add(byDescription, normalize(node.description), node);
+
+        if (node.right > node.left && node.bottom > node.top) {
+            int minX = Math.floorDiv(node.left, CELL_SIZE);
+            int maxX = Math.floorDiv(node.right - 1, CELL_SIZE);
+            int minY = Math.floorDiv(node.top, CELL_SIZE);
+            int maxY = Math.floorDiv(node.bottom - 1, CELL_SIZE);
+            if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_GRID_CELLS) {
+                oversized.add(node);
+            } else {
+                for (int cx = minX; cx <= maxX; cx++) {
+                    for (int cy = minY; cy <= maxY; cy++) {
+                        add(grid, cellKey(cx, cy), node);
+                    }
+                }
+            }
+        }
+        size++;
+    }
+
+    private void unindexNode(UiNode node) {
+        if (node.handle != null && byHandle.get(node.handle) == node) byHandle.remove(node.handle);
+        remove(byViewId, node.viewId, node);
+        remove(byText, normalize(node.text), node);
+        remove(byDescription, normalize(node.description), node);
+
+        if (node.right > node.left && node.bottom > node.top) {
+            int minX = Math.floorDiv(node.left, CELL_SIZE);
+            int maxX = Math.floorDiv(node.right - 1, CELL_SIZE);
+            int minY = Math.floorDiv(node.top, CELL_SIZE);
+            int maxY = Math.floorDiv(node.bottom - 1, CELL_SIZE);
+            if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_GRID_CELLS) {
+                oversized.remove(node);
+            } else {
+                for (int cx = minX; cx <= maxX; cx++) {
+                    for (int cy = minY; cy <= maxY; cy++) {
+                        remove(grid, cellKey(cx, cy), node);
+                    }
+                }
+            }
+        }
+        size--;
+    }
+
+    private static UiNode smallestContaining(List<UiNode> nodes, int x, int y, UiNode best) {
+        for (UiNode node : nodes) {
+            if (node.contains(x, y) && (best == null || node.area() < best.area())) best = node;
+        }
+        return best;
+    }
+
+    private static boolean intersects(UiNode node, int left, int top, int right, int bottom) {
+        return node.left < right && left < node.right && node.top < bottom && top < node.bottom;
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    static String normalize(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    private static <K> List<UiNode> lookup(Map<K, List<UiNode>> map, K key) {
+        if (key == null) return Collections.emptyList();
+        List<UiNode> nodes = map.get(key);
+        return nodes != null ? Collections.unmodifiableList(nodes) : Collections.<UiNode>emptyList();
+    }
+
+    private static <K> void add(Map<K, List<UiNode>> map, K key, UiNode node) {
+        if (key == null) return;
+        List<UiNode> nodes = map.get(key);
+        if (nodes == null) {
+            nodes = new ArrayList<>(2);
+            map.put(key, nodes);
+        }
+        nodes.add(node);
+    }
+
+    private static <K> void remove(Map<K, List<UiNode>> map, K key, UiNode node) {
+        if (key == null) return;
+        List<UiNode> nodes = map.get(key);
+        if (nodes == null) return;
+        nodes.remove(node);
+        if (nodes.isEmpty()) map.remove(key);
+    }
+}
@@ -0,0 +1,130 @@
+package com.quantumai.os;
+
+import java.nio.ByteBuffer;
+
+// Energy / zero-crossing voice activity detector over 16 kHz mono 16-bit PCM in
+// 20 ms frames. A frame is a speech candidate when its energy clears an adaptive
+// noise floor by a margin and its zero-crossing rate looks voiced (or it is loud
+// enough that the rate doesn't matter). Speech starts after a run of candidate
+// frames and ends after a hangover of quiet ones, so single clicks and short
+// pauses between words don't toggle the state.
+//
+// Pure Java and allocation-free per frame so it can run on the capture thread and
+// be exercised on the JVM against recorded PCM.
+public class VoiceActivityDetector {
+
+    public static final int SAMPLE_RATE = 16000;
+    public static final int FRAME_SAMPLES = 320;
+    public static final int FRAME_BYTES = FRAME_SAMPLES * 2;
+
+    public static final int EVENT_NONE = 0;
+    public static final int EVENT_SPEECH_START = 1;
+    public static final int EVENT_SPEECH_END = 2;
+
+    private static final float SILENCE_DB = -90f;
+    // dBFS below which nothing is treated as speech, whatever the floor
+    private static final float MIN_SPEECH_DB = -50f;
+    private static final float SPEECH_MARGIN_DB = 9f;
+    // Crossings per sample; voiced speech sits well below, hiss well above
+    private static final float MAX_VOICED_ZCR = 0.3f;
+    private static final int ONSET_FRAMES = 3;
+    private static final int HANGOVER_FRAMES = 15;
+    // Noise floor follows drops quickly and rises slowly, and only outside speech
+    private static final float FLOOR_FALL = 0.2f;
+    private static final float FLOOR_RISE = 0.02f;
+
+    private float noiseFloorDb = Float.NaN;
+    private boolean speaking;
+    private int candidateRun;
+    private int quietRun;
+
+    private float energyDb = SILENCE_DB;
+    private float zeroCrossingRate;
+
+    // Classifies the frame of FRAME_BYTES little-endian samples at offset
+    public int process(ByteBuffer pcm, int offset) {
+        long sumSquares = 0;
+        int crossings = 0;
+        int previous = pcm.getShort(offset);
+        for (int i = 0; i < FRAME_SAMPLES; i++) {
+            int sample = pcm.getShort(offset + i * 2);
+            sumSquares += (long) sample * sample;
+            if ((sample ^ previous) < 0) crossings++;
+            previous = sample;
+        }
+        double meanSquare = sumSquares / (double) FRAME_SAMPLES;
+        energyDb = meanSquare > 0 ? (float) (10 * Math.log10(meanSquare / (32768.0 * 32768.0))) : SILENCE_DB;
+        zeroCrossingRate = crossings / (float) FRAME_SAMPLES;
+        return classify(energyDb, zeroCrossingRate);
+    }
+
+    private int classify(float db, float zcr) {
+        if (Float.isNaN(noiseFloorDb)) noiseFloorDb = db;
+
+        float threshold = Math.max(MIN_SPEECH_DB, noiseFloorDb + SPEECH_MARGIN_DB);
+        boolean candidate = db > threshold
+                && (zcr < MAX_VOICED_ZCR || db > threshold + SPEECH_MARGIN_DB);
+
+        if (!speaking && !candidate) {
+            noiseFloorDb += (db - noiseFloorDb) * (db < noiseFloorDb ? FLOOR_FALL : FLOOR_RISE);
+        }
+
+        if (!speaking) {
+            candidateRun = candidate ? candidateRun + 1 : 0;
+            if (candidateRun >= ONSET_FRAMES) {
+                speaking = true;
+                quietRun = 0;
+                return EVENT_SPEECH_START;
+            }
+        } else {
+            quietRun = candidate ? 0 : quietRun + 1;
+            if (quietRun >= HANGOVER_FRAMES) {
+                speaking = false;
+                candidateRun = 0;
+                return EVENT_SPEECH_END;
+            }
+        }
+        return EVENT_NONE;
+    }
+
+    public boolean isSpeaking() {
+        return speaking;
+    }
+
+    // Frames of speech already seen when EVENT_SPEECH_START is reported
+    public int getOnsetFrames() {
+        return ONSET_FRAMES;
+    }
+
+    public float getEnergyDb() {
+        return energyDb;
+    }
+
+    public float getZeroCrossingRate() {
+        return zeroCrossingRate;
+    }
+
+    public float getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    // Energy of the last frame mapped from -60..0 dBFS onto 0..1, e.g. for the orb
+    public float getLevel() {
+        float level = (energyDb + 60f) / 60f;
+        return level < 0f ? 0f : Math.min(level, 1f);
+    }
+
+    // Ends the current speech run but keeps the learned noise floor
+    public void endSpeech() {
+        speaking = false;
+        candidateRun = 0;
+        quietRun = 0;
+    }
+
+    public void reset() {
+        noiseFloorDb = Float.NaN;
+        speaking = false;
+        candidateRun = 0;
+        quietRun = 0;
+    }
+}
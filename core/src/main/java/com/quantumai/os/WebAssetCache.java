@@ -0,0 +1,319 @@
+package com.quantumai.os;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory LRU of WebUI static files, bounded by total bytes. Files are loaded
+// from a local bundle (Store) on first use and served from memory afterwards.
+// A file the bundle doesn't have is fetched from the backend once and saved to
+// the bundle, so after one successful visit the UI renders with the backend down.
+//
+// An entry older than the revalidation interval is still served at once, but a
+// background conditional GET (If-None-Match) checks it against the backend: 304
+// just refreshes the timestamp, 200 replaces the entry and updates the local
+// bundle. Failures are ignored, so the UI keeps working with the backend down.
+// A path neither the bundle nor the backend has is remembered as missing and
+// left to the network; the backend is asked again after the same interval.
+//
+// Only files with a static extension (see mimeTypeFor) are cached. Extensionless
+// paths such as client-side routes, and anything else dynamic, return null and go
+// to the network. The backend's Content-Type is kept with each file and served back.
+public class WebAssetCache {
+
+    private static final int MAX_ENTRIES = 512;
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 10_000;
+
+    public static final class Asset {
+        public final String path;
+        public final byte[] data;
+        public final String mimeType;
+        // Charset from the Content-Type, or null if it didn't name one
+        public final String encoding;
+        // As the backend sent it, or null for a file that came with the bundle
+        public final String contentType;
+        public final String etag;
+        final boolean missing;
+        volatile long validatedAt;
+
+        // contentType may be null, in which case the type is taken from the extension
+        public Asset(String path, byte[] data, String etag, String contentType) {
+            this(path, data, etag, contentType, false);
+        }
+
+        private Asset(String path, byte[] data, String etag, String contentType, boolean missing) {
+            this.path = path;
+            this.data = data;
+            this.etag = etag;
+            this.contentType = contentType;
+            this.missing = missing;
+            String type = null;
+            String charset = null;
+            if (contentType != null) {
+                String[] parts = contentType.split(";");
+                type = parts[0].trim().toLowerCase();
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.regionMatches(true, 0, "charset=", 0, 8)) charset = param.substring(8).trim();
+                }
+            }
+            String guessed = mimeTypeFor(path);
+            this.mimeType = type != null && !type.isEmpty() ? type : guessed != null ? guessed : "application/octet-stream";
+            this.encoding = charset;
+        }
+    }
+
+    public interface Store {
+        // Local copy of path (e.g. "/index.html"), or null if the bundle doesn't have it
+        Asset load(String path) throws IOException;
+
+        void save(String path, byte[] data, String etag, String contentType) throws IOException;
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Store store;
+    private final String origin;
+    private final Executor executor;
+    private final long maxBytes;
+    private final long revalidateAfterMs;
+    private final LinkedHashMap<String, Asset> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+
+    // origin is where revalidation requests go, e.g. "http://127.0.0.1:5000"
+    public WebAssetCache(Store store, String origin, Executor executor, long maxBytes, long revalidateAfterMs) {
+        this.store = store;
+        this.origin = origin;
+        this.executor = executor;
+        this.maxBytes = maxBytes;
+        this.revalidateAfterMs = revalidateAfterMs;
+    }
+
+    // Returns null when neither the bundle nor the backend has the path, or when
+    // the path isn't a static file. May block on the backend for a path not cached
+    // yet, so call it off the main thread.
+    public Asset get(String path) {
+        if (!isCacheable(path)) return null;
+
+        Asset asset;
+        synchronized (entries) {
+            asset = entries.get(path);
+        }
+        long now = System.currentTimeMillis();
+        if (asset != null) {
+            hits.incrementAndGet();
+        } else {
+            try {
+                asset = store.load(path);
+            } catch (IOException e) {
+                asset = null;
+            }
+            loads.incrementAndGet();
+            if (asset != null) {
+                asset.validatedAt = now;
+                put(path, asset);
+            }
+        }
+
+        if (asset == null || asset.missing && now - asset.validatedAt > revalidateAfterMs) {
+            asset = fetch(path);
+            put(path, asset);
+        }
+        if (asset.missing) return null;
+        if (now - asset.validatedAt > revalidateAfterMs) revalidate(asset);
+        return asset;
+    }
+
+    // True if path is cached or in the local bundle; never goes to the network
+    public boolean hasLocal(String path) {
+        if (!isCacheable(path)) return false;
+        synchronized (entries) {
+            Asset asset = entries.get(path);
+            if (asset != null) return !asset.missing;
+        }
+        Asset asset;
+        try {
+            asset = store.load(path);
+        } catch (IOException e) {
+            return false;
+        }
+        loads.incrementAndGet();
+        if (asset == null) return false;
+        asset.validatedAt = System.currentTimeMillis();
+        put(path, asset);
+        return true;
+    }
+
+    // A file with a static extension, and no way out of the bundle directory
+    public static boolean isCacheable(String path) {
+        return !path.contains("..") && mimeTypeFor(path) != null;
+    }
+
+    public String stats() {
+        synchronized (entries) {
+            return entries.size() + " entries, " + bytes + " bytes, hits=" + hits + " loads=" + loads
+                    + " fetched=" + fetched + " notModified=" + notModified + " updated=" + updated;
+        }
+    }
+
+    // Plain GET of a path the bundle lacks; a 200 is saved to the bundle. Anything
+    // else yields a missing marker
+    private Asset fetch(String path) {
+        HttpURLConnection connection = null;
+        Asset asset;
+        try {
+            connection = (HttpURLConnection) new URL(urlFor(path)).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                byte[] data = readAll(connection.getInputStream());
+                String etag = connection.getHeaderField("ETag");
+                String contentType = connection.getContentType();
+                try {
+                    store.save(path, data, etag, contentType);
+                } catch (IOException e) {
+                    // Still served from memory; fetched again next launch
+                }
+                asset = new Asset(path, data, etag, contentType);
+                fetched.incrementAndGet();
+            } else {
+                asset = new Asset(path, EMPTY, null, null, true);
+            }
+        } catch (IOException e) {
+            asset = new Asset(path, EMPTY, null, null, true);
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+        asset.validatedAt = System.currentTimeMillis();
+        return asset;
+    }
+
+    // WebUiClient asks for directory paths as ".../index.html"; the backend serves them as "/"
+    private String urlFor(String path) {
+        return origin + (path.endsWith("/index.html") ? path.substring(0, path.length() - "index.html".length()) : path);
+    }
+
+    private void put(String path, Asset asset) {
+        synchronized (entries) {
+            Asset previous = entries.put(path, asset);
+            if (previous != null) bytes -= previous.data.length;
+            bytes += asset.data.length;
+
+            Iterator<Map.Entry<String, Asset>> eldest = entries.entrySet().iterator();
+            while ((bytes > maxBytes || entries.size() > MAX_ENTRIES) && eldest.hasNext()) {
+                Map.Entry<String, Asset> entry = eldest.next();
+                // Never evict what was just added, even if it alone exceeds the budget
+                if (entry.getKey().equals(path)) break;
+                bytes -= entry.getValue().data.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private void revalidate(Asset asset) {
+        if (!revalidating.add(asset.path)) return;
+        executor.execute(() -> {
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(urlFor(asset.path)).openConnection();
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                if (asset.etag != null) connection.setRequestProperty("If-None-Match", asset.etag);
+
+                int code = connection.getResponseCode();
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    notModified.incrementAndGet();
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    byte[] data = readAll(connection.getInputStream());
+                    String etag = connection.getHeaderField("ETag");
+                    String contentType = connection.getContentType();
+                    store.save(asset.path, data, etag, contentType);
+                    Asset fresh = new Asset(asset.path, data, etag, contentType);
+                    fresh.validatedAt = System.currentTimeMillis();
+                    put(asset.path, fresh);
+                    updated.incrementAndGet();
+                }
+            } catch (IOException e) {
+                // Backend unreachable; keep serving the local copy
+            } finally {
+                // Also on failure, so an offline backend isn't retried on every request
+                asset.validatedAt = System.currentTimeMillis();
+                if (connection != null) connection.disconnect();
+                revalidating.remove(asset.path);
+            }
+        });
+    }
+
+    public static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(1024, input.available()));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // Type for a static file extension, or null if the path doesn't have one
+    static String mimeTypeFor(String path) {
+        int dot = path.lastIndexOf('.');
+        String ext = dot < 0 ? "" : path.substring(dot + 1).toLowerCase();
+        switch (ext) {
+            case "html":
+            case "htm":
+                return "text/html";
+            case "js":
+            case "mjs":
+                return "text/javascript";
+            case "css":
+                return "text/css";
+            case "json":
+            case "map":
+                return "application/json";
+            case "svg":
+                return "image/svg+xml";
+            case "png":
+                return "image/png";
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "webp":
+                return "image/webp";
+            case "gif":
+                return "image/gif";
+            case "ico":
+                return "image/x-icon";
+            case "woff2":
+                return "font/woff2";
+            case "woff":
+                return "font/woff";
+            case "ttf":
+                return "font/ttf";
+            case "wasm":
+                return "application/wasm";
+            case "txt":
+                return "text/plain";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.quantumai.os;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Lock-free hand-off to a single consumer thread. Producers append to a
+// non-blocking queue; only the first task after the consumer goes idle wakes it
+// (through wake, e.g. a worker Handler::post), so a burst of events or commands
+// costs one message-queue insertion instead of one each.
+//
+// A drain runs for at most drainBudgetNanos before yielding, so timers and
+// callbacks posted to the same thread are not starved by a backlog.
+public class WorkQueue implements Executor {
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+    private final Executor wake;
+    private final ThreadLoad load;
+    private final long drainBudgetNanos;
+    private final Runnable drainTask = this::drain;
+
+    public WorkQueue(Executor wake, ThreadLoad load, long drainBudgetNanos) {
+        this.wake = wake;
+        this.load = load;
+        this.drainBudgetNanos = drainBudgetNanos;
+    }
+
+    // Any thread
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        load.enqueued();
+        if (drainPosted.compareAndSet(false, true)) wake.execute(drainTask);
+    }
+
+    // Consumer thread: runs everything queued, ignoring the budget. For shutdown,
+    // where a re-posted drain could land after the thread has stopped taking posts.
+    public void drainAll() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            load.dequeued();
+            task.run();
+        }
+    }
+
+    private void drain() {
+        // Cleared first: a task offered from now on either gets polled below or posts a new drain
+        drainPosted.set(false);
+        long until = System.nanoTime() + drainBudgetNanos;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            load.dequeued();
+            task.run();
+            if (System.nanoTime() > until) {
+                if (!tasks.isEmpty() && drainPosted.compareAndSet(false, true)) wake.execute(drainTask);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.quantumai.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads the committed part of a WorkflowRecorder file back into events
+public class WorkflowReader {
+
+    public static class Event {
+        public int type;
+        public long time;
+        public String packageName;
+        public String node;
+        public String text;
+        public int left, top, right, bottom;
+
+        public boolean hasBounds() {
+            return right > left && bottom > top;
+        }
+    }
+
+    public static List<Event> read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(WorkflowRecorder.HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != WorkflowRecorder.MAGIC) throw new IOException("Not a workflow recording");
+            if (header.getInt(4) != WorkflowRecorder.VERSION) throw new IOException("Unsupported recording version");
+
+            long committed = Math.min(header.getLong(8), channel.size() - WorkflowRecorder.HEADER_SIZE);
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, WorkflowRecorder.HEADER_SIZE, committed);
+
+            Map<Integer, String> strings = new HashMap<>();
+            List<Event> events = new ArrayList<>();
+            while (records.hasRemaining()) {
+                byte tag = records.get();
+                if (tag == WorkflowRecorder.TAG_STRING) {
+                    int id = records.getInt();
+                    byte[] bytes = new byte[records.getShort()];
+                    records.get(bytes);
+                    strings.put(id, new String(bytes, StandardCharsets.UTF_8));
+                } else if (tag == WorkflowRecorder.TAG_EVENT) {
+                    Event event = new Event();
+                    event.type = records.getInt();
+                    event.time = records.getLong();
+                    event.packageName = strings.get(records.getInt());
+                    event.node = strings.get(records.getInt());
+                    event.text = strings.get(records.getInt());
+                    event.left = records.getInt();
+                    event.top = records.getInt();
+                    event.right = records.getInt();
+                    event.bottom = records.getInt();
+                    events.add(event);
+                } else {
+                    throw new IOException("Corrupt record tag " + tag);
+                }
+            }
+            return events;
+        }
+    }
+}
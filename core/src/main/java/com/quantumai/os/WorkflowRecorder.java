@@ -0,0 +1,219 @@
+package com.quantumai.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Always-on event recorder. Events land in one of two preallocated primitive-array
+// segments; a full segment is handed to a background thread that appends it to a
+// memory-mapped file while recording continues into the other one. If both are
+// busy the event is dropped and counted rather than blocking the caller.
+//
+// File layout (big-endian):
+//   header  [int magic "QWFR"][int version][long committedBytes][long createdAtMillis][long reserved]
+//   records [byte TAG_STRING][int id][short length][UTF-8 bytes]
+//           [byte TAG_EVENT][int type][long time][int package][int node][int text][int l][int t][int r][int b]
+// committedBytes counts the record bytes after the header that are complete, so a
+// reader can tail the file while it is being written.
+public class WorkflowRecorder {
+
+    public static final int MAGIC = 0x51574652;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final byte TAG_STRING = 1;
+    public static final byte TAG_EVENT = 2;
+    public static final int EVENT_RECORD_SIZE = 1 + 4 + 8 + 4 * 7;
+
+    private static final int SEGMENT_EVENTS = 4096;
+    private static final int REGION_SIZE = 1 << 20;
+
+    private static class Segment {
+        final int[] type = new int[SEGMENT_EVENTS];
+        final long[] time = new long[SEGMENT_EVENTS];
+        final int[] pkg = new int[SEGMENT_EVENTS];
+        final int[] node = new int[SEGMENT_EVENTS];
+        final int[] text = new int[SEGMENT_EVENTS];
+        final int[] left = new int[SEGMENT_EVENTS];
+        final int[] top = new int[SEGMENT_EVENTS];
+        final int[] right = new int[SEGMENT_EVENTS];
+        final int[] bottom = new int[SEGMENT_EVENTS];
+        // Strings first referenced by this segment, written ahead of its events
+        final List<String> newStrings = new ArrayList<>();
+        int firstNewStringId;
+        int count;
+        volatile boolean flushing;
+    }
+
+    private final File file;
+    private final Segment[] segments = {new Segment(), new Segment()};
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor();
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long committed;
+
+    private int active;
+    private long recorded;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public WorkflowRecorder(File file) throws IOException {
+        this.file = file;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putLong(8, 0);
+        header.putLong(16, System.currentTimeMillis());
+        regionStart = HEADER_SIZE;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRecorded() {
+        return recorded;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Hot path: no allocation unless a string is seen for the first time
+    public void record(int type, long time, String pkg, String node, String text,
+                       int left, int top, int right, int bottom) {
+        Segment segment = segments[active];
+        if (segment.flushing || segment.count == SEGMENT_EVENTS) {
+            if (!segment.flushing) submit(segment);
+            Segment other = segments[active ^ 1];
+            if (other.flushing) {
+                dropped.incrementAndGet();
+                return;
+            }
+            active ^= 1;
+            segment = other;
+        }
+
+        int i = segment.count;
+        segment.type[i] = type;
+        segment.time[i] = time;
+        segment.pkg[i] = intern(segment, pkg);
+        segment.node[i] = intern(segment, node);
+        segment.text[i] = intern(segment, text);
+        segment.left[i] = left;
+        segment.top[i] = top;
+        segment.right[i] = right;
+        segment.bottom[i] = bottom;
+        segment.count = i + 1;
+        recorded++;
+    }
+
+    // Pushes out the partially filled segment, e.g. before the backend reads the file
+    public void flush() {
+        Segment segment = segments[active];
+        if (segment.count == 0 || segment.flushing) return;
+        submit(segment);
+    }
+
+    public void close() {
+        flush();
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            region.force();
+            header.force();
+            channel.truncate(HEADER_SIZE + committed);
+            raf.close();
+        } catch (Exception e) {
+            // Whatever was committed stays readable
+        }
+    }
+
+    private int intern(Segment segment, String value) {
+        if (value == null) return -1;
+        Integer id = strings.get(value);
+        if (id != null) return id;
+
+        int newId = strings.size();
+        strings.put(value, newId);
+        if (segment.newStrings.isEmpty()) segment.firstNewStringId = newId;
+        segment.newStrings.add(value);
+        return newId;
+    }
+
+    private void submit(Segment segment) {
+        segment.flushing = true;
+        flusher.execute(() -> {
+            try {
+                write(segment);
+            } catch (IOException e) {
+                dropped.addAndGet(segment.count);
+            } finally {
+                segment.count = 0;
+                segment.newStrings.clear();
+                segment.flushing = false;
+            }
+        });
+    }
+
+    private void write(Segment segment) throws IOException {
+        for (int s = 0; s < segment.newStrings.size(); s++) {
+            byte[] bytes = segment.newStrings.get(s).getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(bytes.length, Short.MAX_VALUE);
+            // Cut before the character the limit falls in, not through it: back up
+            // while the first byte left out is a UTF-8 continuation byte
+            while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) length--;
+            ensure(1 + 4 + 2 + length);
+            region.put(TAG_STRING);
+            region.putInt(segment.firstNewStringId + s);
+            region.putShort((short) length);
+            region.put(bytes, 0, length);
+        }
+
+        for (int i = 0; i < segment.count; i++) {
+            ensure(EVENT_RECORD_SIZE);
+            region.put(TAG_EVENT);
+            region.putInt(segment.type[i]);
+            region.putLong(segment.time[i]);
+            region.putInt(segment.pkg[i]);
+            region.putInt(segment.node[i]);
+            region.putInt(segment.text[i]);
+            region.putInt(segment.left[i]);
+            region.putInt(segment.top[i]);
+            region.putInt(segment.right[i]);
+            region.putInt(segment.bottom[i]);
+        }
+
+        // Publish only complete records
+        committed = regionStart + region.position() - HEADER_SIZE;
+        header.putLong(8, committed);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (region.remaining() >= bytes) return;
+        regionStart += region.position();
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+    }
+}